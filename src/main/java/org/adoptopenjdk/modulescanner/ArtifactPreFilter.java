@@ -0,0 +1,215 @@
+package org.adoptopenjdk.modulescanner;
+
+import org.adoptopenjdk.modulescanner.MavenRepoWalker.MavenArtifact;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class is responsible for filtering out Maven artifacts without an
+ * inspectable jar, before anything gets opened.
+ *
+ * A single file attribute lookup settles the common case of a jar being there.
+ * Only when it is not, the version directory and the packaging in the pom are
+ * checked to classify why the artifact is skipped. Skips are counted per reason.
+ *
+ * When watching a repository that is still being synced, a missing version
+ * directory or pom means the release hasn't landed yet. With retryMissing set,
+ * those artifacts are reported as to be retried instead of being skipped. Once
+ * the pom is there, a missing jar stays missing, e.g. for a relocation pom.
+ */
+public class ArtifactPreFilter implements Predicate<MavenArtifact> {
+
+    private static final Logger LOGGER = LogManager.getLogger("ArtifactPreFilter");
+
+    private static final String DEFAULT_PACKAGING = "jar";
+    // Packagings whose main artifact is a jar
+    private static final Set<String> JAR_PACKAGINGS = Set.of(DEFAULT_PACKAGING, "bundle", "maven-plugin", "ejb",
+            "eclipse-plugin", "maven-archetype", "takari-jar", "test-jar");
+    private static final Pattern PACKAGING_PATTERN = Pattern.compile("<packaging>\\s*([^<\\s]+)\\s*</packaging>");
+
+    /**
+     * The reasons for skipping an artifact
+     */
+    public enum SkipReason {
+        /** The version directory of the latest version is not there */
+        MISSING_VERSION_DIRECTORY,
+        /** The pom declares pom packaging, there is no jar to inspect */
+        POM_PACKAGING,
+        /** The pom declares another packaging than jar, e.g. aar or war */
+        NON_JAR_PACKAGING,
+        /** The jar is not there, while the packaging (if known) says there should be one */
+        MISSING_JAR,
+        /** The jar is there, but empty */
+        EMPTY_JAR,
+        /** The jar is there, but not readable */
+        UNREADABLE_JAR
+    }
+
+    /**
+     * What to do with an artifact
+     */
+    public enum Verdict {
+        /** The jar is there, inspect it */
+        INSPECT,
+        /** There is no jar worth inspecting */
+        SKIP,
+        /** The jar is not there yet, check again later */
+        RETRY
+    }
+
+    private final boolean retryMissing;
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final Map<SkipReason, LongAdder> skipped = new EnumMap<>(SkipReason.class);
+
+    /**
+     * Constructor, for a repository that is complete
+     */
+    public ArtifactPreFilter() {
+        this(false);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param retryMissing - Retry rather than skip artifacts whose version directory or jar is missing
+     */
+    public ArtifactPreFilter(boolean retryMissing) {
+        this.retryMissing = retryMissing;
+        for (SkipReason reason : SkipReason.values()) {
+            skipped.put(reason, new LongAdder());
+        }
+    }
+
+    /**
+     * Check whether the artifact has a jar worth inspecting, counting it as either accepted or skipped
+     *
+     * @param artifact - the artifact to check
+     * @return true if the artifact should be inspected
+     */
+    @Override
+    public boolean test(MavenArtifact artifact) {
+        return check(artifact) == Verdict.INSPECT;
+    }
+
+    /**
+     * Check what to do with the artifact, counting it as accepted, retried or skipped
+     *
+     * @param artifact - the artifact to check
+     * @return the verdict for the artifact
+     */
+    public Verdict check(MavenArtifact artifact) {
+        SkipReason reason = classify(artifact);
+        if (reason == null) {
+            accepted.increment();
+            return Verdict.INSPECT;
+        }
+        if (retryMissing && (reason == SkipReason.MISSING_VERSION_DIRECTORY
+                || reason == SkipReason.MISSING_JAR && !Files.exists(getPom(artifact)))) {
+            LOGGER.info("Waiting for " + artifact.path + " to land: " + reason);
+            retried.increment();
+            return Verdict.RETRY;
+        }
+        LOGGER.debug("Skipping " + artifact + ": " + reason);
+        skipped.get(reason).increment();
+        return Verdict.SKIP;
+    }
+
+    /**
+     * Classify why the artifact can't be inspected
+     *
+     * @param artifact - the artifact to check
+     * @return the reason to skip the artifact, or null if it has a jar worth inspecting
+     */
+    public SkipReason classify(MavenArtifact artifact) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(artifact.path, BasicFileAttributes.class);
+            if (!attrs.isRegularFile()) {
+                return SkipReason.MISSING_JAR;
+            }
+            if (attrs.size() == 0) {
+                return SkipReason.EMPTY_JAR;
+            }
+            return Files.isReadable(artifact.path) ? null : SkipReason.UNREADABLE_JAR;
+        } catch (IOException ioe) {
+            return classifyMissingJar(artifact);
+        }
+    }
+
+    // Find out why there is no jar, going by the version directory and the packaging in the pom
+    private SkipReason classifyMissingJar(MavenArtifact artifact) {
+        Path versionDirectory = artifact.path.getParent();
+        if (!Files.isDirectory(versionDirectory)) {
+            return SkipReason.MISSING_VERSION_DIRECTORY;
+        }
+        String packaging = getPackaging(getPom(artifact));
+        if ("pom".equals(packaging)) {
+            return SkipReason.POM_PACKAGING;
+        }
+        // Bundles, plugins and the like are jars too, a missing bundle jar is a missing jar
+        if (packaging != null && !JAR_PACKAGINGS.contains(packaging)) {
+            return SkipReason.NON_JAR_PACKAGING;
+        }
+        return SkipReason.MISSING_JAR;
+    }
+
+    // The pom next to the jar of the artifact
+    private static Path getPom(MavenArtifact artifact) {
+        return artifact.path.resolveSibling(artifact.artifactId + "-" + artifact.version + ".pom");
+    }
+
+    // Get the packaging declared in the pom, the default if it declares none, null if there is no pom
+    private String getPackaging(Path pom) {
+        try {
+            Matcher m = PACKAGING_PATTERN.matcher(Files.readString(pom, StandardCharsets.ISO_8859_1));
+            return m.find() ? m.group(1) : DEFAULT_PACKAGING;
+        } catch (IOException ioe) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the number of artifacts that passed the filter
+     */
+    public long getAcceptedCount() {
+        return accepted.sum();
+    }
+
+    /**
+     * @return the number of times an artifact was found not to have landed yet
+     */
+    public long getRetriedCount() {
+        return retried.sum();
+    }
+
+    /**
+     * @param reason - the reason to get the count for
+     * @return the number of artifacts skipped for the given reason
+     */
+    public long getSkippedCount(SkipReason reason) {
+        return skipped.get(reason).sum();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("ArtifactPreFilter{accepted=").append(accepted.sum());
+        if (retryMissing) {
+            sb.append(", retried=").append(retried.sum());
+        }
+        skipped.forEach((reason, count) -> sb.append(", ").append(reason).append('=').append(count.sum()));
+        return sb.append('}').toString();
+    }
+}
@@ -1,12 +1,20 @@
 package org.adoptopenjdk.modulescanner;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 import java.util.jar.JarFile;
 import org.adoptopenjdk.modulescanner.MavenRepoWalker.MavenArtifact;
 import org.apache.logging.log4j.LogManager;
@@ -25,52 +33,255 @@ public class Main {
     private static String CUTOFF_DATE = "20170101000000";
     private static String DEFAULT_OUTPUT_FILE_NAME = "modulescanner.csv";
     private static String DEFAULT_OUTPUT_DELIMITER = ",";
+    private static ResultWriter.Order DEFAULT_OUTPUT_ORDER = ResultWriter.Order.UNORDERED;
+    private static long DEFAULT_RECONCILE_MINUTES = 15;
+    private static String STATE_FILE_SUFFIX = ".watch-state";
+    private static long SHUTDOWN_TIMEOUT_SECONDS = 60;
+    private static String DEFAULT_ESTIMATES_FILE_NAME = "modulescanner-estimates.csv";
+    // Large enough for a worst case margin of about 1% at 95% confidence
+    private static int DEFAULT_SAMPLE_SIZE = 9604;
+    private static long DEFAULT_SAMPLE_SEED = 0;
+    private static StratifiedSample.Stratification DEFAULT_STRATIFICATION = StratifiedSample.Stratification.GROUP;
+    private static int DEFAULT_QUERY_PORT = 8080;
+    private static long DEFAULT_RELOAD_SECONDS = 60;
+    private static String WATCH_OPTION = "--watch";
+    private static String SAMPLE_OPTION = "--sample";
+    private static String SERVE_OPTION = "--serve";
 
     /**
      * Main method - entry point for invoking modulescanner
      *
+     * Scans once by default, when the first argument is {@code --watch} it keeps
+     * watching the repository and appends to the output as artifacts land, when
+     * it is {@code --sample} it only inspects a stratified random sample and
+     * writes estimated proportions for the whole repository, and when it is
+     * {@code --serve} it answers lookups over an output file on localhost.
+     *
      * @param args Commandline arguments
      */
     public static void main(String... args) {
+        if (args.length > 0 && WATCH_OPTION.equals(args[0])) {
+            watch(Arrays.copyOfRange(args, 1, args.length));
+        } else if (args.length > 0 && SAMPLE_OPTION.equals(args[0])) {
+            sample(Arrays.copyOfRange(args, 1, args.length));
+        } else if (args.length > 0 && SERVE_OPTION.equals(args[0])) {
+            serve(Arrays.copyOfRange(args, 1, args.length));
+        } else {
+            scan(args);
+        }
+    }
+
+    // Scan the repository once and write a fresh CSV file
+    private static void scan(String... args) {
         var directoryToScan = Paths.get(args.length > 0 ? args[0] : DEFAULT_DIRECTORY_TO_SCAN);
         var cutoffDate = args.length > 1 ? args[1] : CUTOFF_DATE;
         var output = Paths.get(args.length > 2 ? args[2] : DEFAULT_OUTPUT_FILE_NAME);
+        var outputOrder = args.length > 3 ? ResultWriter.Order.valueOf(args[3].toUpperCase(Locale.ROOT)) : DEFAULT_OUTPUT_ORDER;
 
         LOGGER.info("Scanning for modules...");
         LOGGER.info("  directoryToScan = " + directoryToScan);
         LOGGER.info("       cutoffDate = " + cutoffDate);
         LOGGER.info("           output = " + output);
+        LOGGER.info("      outputOrder = " + outputOrder);
 
-        try (var out = new PrintWriter(new BufferedWriter(new FileWriter(output.toFile())))) {
-            walk(directoryToScan, cutoffDate, out);
+        try {
+            try (var out = new ResultWriter(output, outputOrder, false)) {
+                walk(directoryToScan, cutoffDate, out);
+            }
             LOGGER.info("Wrote " + Files.size(output) + " bytes to: " + output);
         } catch (IOException ioe) {
             LOGGER.error("Creating output file " + output + " failed", ioe);
         }
     }
 
+    // Watch a continuously synced repository and append CSV lines as artifacts land
+    private static void watch(String... args) {
+        var directoryToWatch = Paths.get(args.length > 0 ? args[0] : DEFAULT_DIRECTORY_TO_SCAN);
+        var cutoffDate = args.length > 1 ? args[1] : CUTOFF_DATE;
+        var output = Paths.get(args.length > 2 ? args[2] : DEFAULT_OUTPUT_FILE_NAME);
+        var reconcileInterval = Duration.ofMinutes(args.length > 3 ? Long.parseLong(args[3]) : DEFAULT_RECONCILE_MINUTES);
+
+        LOGGER.info("Watching for modules...");
+        LOGGER.info("  directoryToWatch = " + directoryToWatch);
+        LOGGER.info("        cutoffDate = " + cutoffDate);
+        LOGGER.info("            output = " + output);
+        LOGGER.info(" reconcileInterval = " + reconcileInterval);
+
+        // Counted down once the output is complete, which the shutdown hook waits for
+        var stopped = new CountDownLatch(1);
+        try {
+            // The state file keeps track of what a previous run handled, it is only valid along with its output
+            var stateFile = Paths.get(output + STATE_FILE_SUFFIX);
+            var resume = Files.exists(output) && Files.size(output) > 0;
+            if (!resume) {
+                Files.deleteIfExists(stateFile);
+            }
+
+            try (var out = new ResultWriter(output, ResultWriter.Order.UNORDERED, true)) {
+                var printer = new SeparatedValuesPrinter(out, DEFAULT_OUTPUT_DELIMITER);
+                if (!resume) {
+                    printer.printHeaderLine();
+                }
+
+                // Artifacts still in flight are retried rather than skipped
+                var preFilter = new ArtifactPreFilter(true);
+                try (var watcher = new MavenRepoWatcher(directoryToWatch, cutoffDate, stateFile, artifacts -> {
+                    var retry = new ArrayList<MavenArtifact>();
+                    for (var artifact : artifacts) {
+                        var verdict = preFilter.check(artifact);
+                        if (verdict == ArtifactPreFilter.Verdict.INSPECT) {
+                            handleArtifact(artifact, printer);
+                        } else if (verdict == ArtifactPreFilter.Verdict.RETRY) {
+                            retry.add(artifact);
+                        }
+                    }
+                    LOGGER.info("Handled " + artifacts.size() + " artifacts, waiting for " + retry.size() + ", printed " + printer.getLineCount() + " lines so far");
+                    LOGGER.info(preFilter);
+                    // The lines have to be out before the watcher records the artifacts as handled
+                    try {
+                        out.flush();
+                    } catch (IOException ioe) {
+                        throw new UncheckedIOException(ioe);
+                    }
+                    return retry;
+                })) {
+                    Runtime.getRuntime().addShutdownHook(new Thread(() -> stopWatching(watcher, stopped)));
+                    watcher.watch(reconcileInterval);
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.error("Watching " + directoryToWatch + " into " + output + " failed", e);
+        } finally {
+            stopped.countDown();
+        }
+    }
+
+    // Stop watching and wait for the output to be closed, a gzipped output would lack its trailer otherwise
+    private static void stopWatching(MavenRepoWatcher watcher, CountDownLatch stopped) {
+        watcher.close();
+        try {
+            if (!stopped.await(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                LOGGER.warn("Gave up waiting for the output to be closed after " + SHUTDOWN_TIMEOUT_SECONDS + " seconds");
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Inspect a stratified random sample of the repository and write estimates as CSV file
+    private static void sample(String... args) {
+        var directoryToScan = Paths.get(args.length > 0 ? args[0] : DEFAULT_DIRECTORY_TO_SCAN);
+        var cutoffDate = args.length > 1 ? args[1] : CUTOFF_DATE;
+        var output = Paths.get(args.length > 2 ? args[2] : DEFAULT_ESTIMATES_FILE_NAME);
+        var sampleSize = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_SAMPLE_SIZE;
+        var seed = args.length > 4 ? Long.parseLong(args[4]) : DEFAULT_SAMPLE_SEED;
+        var stratification = args.length > 5 ? StratifiedSample.Stratification.valueOf(args[5].toUpperCase(Locale.ROOT)) : DEFAULT_STRATIFICATION;
+
+        LOGGER.info("Sampling for modules...");
+        LOGGER.info("  directoryToScan = " + directoryToScan);
+        LOGGER.info("       cutoffDate = " + cutoffDate);
+        LOGGER.info("           output = " + output);
+        LOGGER.info("       sampleSize = " + sampleSize);
+        LOGGER.info("             seed = " + seed);
+        LOGGER.info("   stratification = " + stratification);
+
+        // Only sample from real jars, so the sample isn't diluted by artifacts that can't be inspected
+        var preFilter = new ArtifactPreFilter();
+        var sample = StratifiedSample.draw(new MavenRepoWalker(directoryToScan, cutoffDate).getArtifactsToInspect().filter(preFilter),
+                stratification, sampleSize, seed);
+        LOGGER.info(preFilter);
+        var moduleResults = new HashMap<MavenArtifact, ModuleInspector.ModuleInspectResult>();
+        var jdepsResults = new HashMap<MavenArtifact, JdepsInspector.JdepsInspectResult>();
+        sample.getArtifacts().forEach(artifact -> inspectArtifact(artifact, (mir, jir) -> {
+            moduleResults.put(artifact, mir);
+            jdepsResults.put(artifact, jir);
+        }));
+        LOGGER.info("Inspected " + moduleResults.size() + " of " + sample.getPopulationSize() + " artifacts");
+
+        // Note: Keep in sync with #estimateLine
+        var lines = List.of(
+                String.join(DEFAULT_OUTPUT_DELIMITER, "metric", "estimate", "lowerBound", "upperBound", "sampleSize", "populationSize"),
+                estimateLine("explicit", sample.estimate(moduleResults, mir -> mir.isExplicitModule)),
+                estimateLine("automatic", sample.estimate(moduleResults, mir -> mir.isAutomaticModule)),
+                estimateLine("module", sample.estimate(moduleResults, mir -> mir.isExplicitModule || mir.isAutomaticModule)),
+                // Out of the artifacts jdeps actually analysed, explicit modules are skipped and tool errors tell nothing
+                estimateLine("jdepsViolations", sample.estimate(jdepsResults,
+                        jir -> jir != JdepsInspector.JdepsInspectResult.SKIPPED && !jir.toolerror,
+                        jir -> !jir.violations.isEmpty())));
+        lines.forEach(LOGGER::info);
+
+        try {
+            Files.write(output, lines, StandardCharsets.UTF_8);
+            LOGGER.info("Wrote " + Files.size(output) + " bytes to: " + output);
+        } catch (IOException ioe) {
+            LOGGER.error("Creating output file " + output + " failed", ioe);
+        }
+    }
+
+    // Create single CSV line from an estimate
+    private static String estimateLine(String metric, StratifiedSample.Estimate estimate) {
+        return String.join(DEFAULT_OUTPUT_DELIMITER,
+                metric,
+                String.format(Locale.ROOT, "%.4f", estimate.proportion),
+                String.format(Locale.ROOT, "%.4f", estimate.lowerBound),
+                String.format(Locale.ROOT, "%.4f", estimate.upperBound),
+                estimate.sampleSize + "",
+                estimate.populationSize + "");
+    }
+
+    // Serve lookups over a CSV file until the process is stopped
+    private static void serve(String... args) {
+        var resultFile = Paths.get(args.length > 0 ? args[0] : DEFAULT_OUTPUT_FILE_NAME);
+        var port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_QUERY_PORT;
+        var reloadInterval = Duration.ofSeconds(args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_RELOAD_SECONDS);
+
+        LOGGER.info("Serving module lookups...");
+        LOGGER.info("      resultFile = " + resultFile);
+        LOGGER.info("            port = " + port);
+        LOGGER.info("  reloadInterval = " + reloadInterval);
+
+        try {
+            var service = new QueryService(resultFile, port, reloadInterval);
+            Runtime.getRuntime().addShutdownHook(new Thread(service::close));
+        } catch (IOException ioe) {
+            LOGGER.error("Serving lookups over " + resultFile + " failed", ioe);
+        }
+    }
+
     // Walk repository and emit CSV file as output
-    private static void walk(Path directoryToScan, String cutoffDate, PrintWriter out) {
+    private static void walk(Path directoryToScan, String cutoffDate, ResultWriter out) {
         var printer = new SeparatedValuesPrinter(out, DEFAULT_OUTPUT_DELIMITER);
         printer.printHeaderLine();
 
+        var preFilter = new ArtifactPreFilter();
         new MavenRepoWalker(directoryToScan, cutoffDate)
                 .getArtifactsToInspect()
+                .filter(preFilter)
                 .forEach(artifact -> handleArtifact(artifact, printer));
 
-        out.flush();
+        LOGGER.info(preFilter);
         LOGGER.info("Printed " + printer.getLineCount() + " lines");
     }
 
     // Inspect artifact and emit CSV line
     private static void handleArtifact(MavenArtifact artifact, SeparatedValuesPrinter printer) {
-        JarFile jarFile = toJarFile(artifact.path);
-        if (jarFile != null) {
-            var moduleInspectorResult = new ModuleInspector(jarFile).inspect();
-            var jdepsInspectorResult = moduleInspectorResult.isExplicitModule ?
-                    JdepsInspector.JdepsInspectResult.SKIPPED : new JdepsInspector(artifact.path).inspect();
-            LOGGER.info(artifact + "\n -> " + moduleInspectorResult + "\n -> " + jdepsInspectorResult);
-            printer.printAndCountLine(artifact, moduleInspectorResult, jdepsInspectorResult);
+        inspectArtifact(artifact, (mir, jir) -> printer.printAndCountLine(artifact, mir, jir));
+    }
+
+    // Inspect artifact and hand the results over, unless it could not be opened
+    private static void inspectArtifact(MavenArtifact artifact,
+                                        BiConsumer<ModuleInspector.ModuleInspectResult, JdepsInspector.JdepsInspectResult> resultHandler) {
+        // Close the jar again, a long running watch would otherwise leak file handles
+        try (JarFile jarFile = toJarFile(artifact.path)) {
+            if (jarFile != null) {
+                var moduleInspectorResult = new ModuleInspector(jarFile).inspect();
+                var jdepsInspectorResult = moduleInspectorResult.isExplicitModule ?
+                        JdepsInspector.JdepsInspectResult.SKIPPED : new JdepsInspector(artifact.path).inspect();
+                LOGGER.info(artifact + "\n -> " + moduleInspectorResult + "\n -> " + jdepsInspectorResult);
+                resultHandler.accept(moduleInspectorResult, jdepsInspectorResult);
+            }
+        } catch (IOException ioe) {
+            LOGGER.warn("Unable to close JAR file: " + artifact.path.toAbsolutePath(), ioe);
         }
     }
 
@@ -79,7 +290,8 @@ public class Main {
         try {
             return new JarFile(path.toFile());
         } catch (IOException ioe) {
-            LOGGER.warn("Unable to convert Path: " + path.toAbsolutePath() + " to a JAR file", ioe);
+            LOGGER.warn("Unable to convert Path: " + path.toAbsolutePath() + " to a JAR file: " + ioe.getMessage());
+            LOGGER.trace(ioe);
             return null;
         }
     }
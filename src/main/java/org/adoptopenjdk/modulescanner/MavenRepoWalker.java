@@ -58,6 +58,16 @@ public class MavenRepoWalker {
         }
     }
 
+    /**
+     * Get the MavenArtifact described by a single maven-metadata.xml file
+     *
+     * @param mavenMetadata - the maven-metadata.xml file to read
+     * @return a stream holding the latest MavenArtifact, empty if it is older than the cutoff
+     */
+    public Stream<MavenArtifact> getArtifactToInspect(Path mavenMetadata) {
+        return getLatestMavenArtifact(mavenMetadata);
+    }
+
     // Get the latest version of a given artifact
     private Stream<MavenArtifact> getLatestMavenArtifact(Path path) {
         try {
@@ -68,7 +78,7 @@ public class MavenRepoWalker {
             String timestamp = findAndExtract(lines, LAST_UPDATED_TAG, LAST_UPDATED_PATTERN);
             String relativeLocation = latestVersion + File.separator + artifactId + "-" + latestVersion + ".jar";
 
-            MavenArtifact artifact = new MavenArtifact(groupId, artifactId, latestVersion, path.getParent().resolve(relativeLocation));
+            MavenArtifact artifact = new MavenArtifact(groupId, artifactId, latestVersion, timestamp, path.getParent().resolve(relativeLocation));
 
             return timestamp.compareTo(cutoffTimestamp) > 0 ? Stream.of(artifact) : Stream.empty();
         } catch (Exception ioe) {
@@ -100,6 +110,8 @@ public class MavenRepoWalker {
         public final String artifactId;
         /** Maven Artifact version */
         public final String version;
+        /** The lastUpdated timestamp of the Maven Artifact, if known */
+        public final String lastUpdated;
         /** Path to the Maven Artifact */
         public final Path path;
 
@@ -112,9 +124,23 @@ public class MavenRepoWalker {
          * @param path - the Path to the Maven Artifact
          */
         public MavenArtifact(String groupId, String artifactId, String version, Path path) {
+            this(groupId, artifactId, version, null, path);
+        }
+
+        /**
+         * Constructor
+         *
+         * @param groupId - The Maven Group Id
+         * @param artifactId - The Maven Artifact Id
+         * @param version - The version of the Maven Artifact
+         * @param lastUpdated - The lastUpdated timestamp from the maven-metadata.xml
+         * @param path - the Path to the Maven Artifact
+         */
+        public MavenArtifact(String groupId, String artifactId, String version, String lastUpdated, Path path) {
             this.groupId = groupId;
             this.artifactId = artifactId;
             this.version = version;
+            this.lastUpdated = lastUpdated;
             this.path = path;
         }
 
@@ -124,6 +150,7 @@ public class MavenRepoWalker {
                     "groupId='" + groupId + '\'' +
                     ", artifactId='" + artifactId + '\'' +
                     ", version='" + version + '\'' +
+                    ", lastUpdated='" + lastUpdated + '\'' +
                     ", path=" + path +
                     '}';
         }
@@ -0,0 +1,424 @@
+package org.adoptopenjdk.modulescanner;
+
+import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import org.adoptopenjdk.modulescanner.MavenRepoWalker.MavenArtifact;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * This class is responsible for watching a continuously synced Maven repository
+ * and handing new or changed artifacts over for inspection as they land.
+ *
+ * A WatchService picks up changes to the repository directories as they happen,
+ * a periodic reconciliation walk over the maven-metadata.xml timestamps covers
+ * any events the WatchService missed. Only the groupId and artifactId
+ * directories are watched and walked, version directories are left alone: a
+ * new release always comes with an updated maven-metadata.xml.
+ *
+ * A maven-metadata.xml often lands before the jar it points to. An artifact only
+ * counts as handled once the handler settled it, until then it is pending: its
+ * version directory is watched and it is retried whenever something lands there
+ * and on every reconciliation.
+ *
+ * The maven-metadata.xml timestamps of the settled artifacts are kept in a state
+ * file, written after every reconciliation, at most a minute after anything got
+ * settled and when watching stops. A restart picks up where the state file left
+ * off, a sync only touches the timestamps of what it actually changed.
+ *
+ * Artifacts are handed over in batches. Closing the watcher lets the batch at
+ * hand finish and leaves the rest to the next run.
+ */
+public class MavenRepoWatcher implements Closeable {
+
+    private static final Logger LOGGER = LogManager.getLogger("MavenRepoWatcher");
+
+    private static final String MAVEN_METADATA = "maven-metadata.xml";
+    private static final String STATE_SEPARATOR = "\t";
+    private static final long STATE_SAVE_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final int BATCH_SIZE = 100;
+
+    private final Path root;
+    private final MavenRepoWalker walker;
+    private final Path stateFile;
+    private final Function<List<MavenArtifact>, List<MavenArtifact>> handler;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+    private final Map<Path, WatchKey> watchKeys = new HashMap<>();
+    private final Map<Path, FileTime> lastSeen = new HashMap<>();
+    private final Map<Path, Path> pending = new HashMap<>();
+    private final Map<Path, Path> pendingVersionDirectories = new HashMap<>();
+    private volatile boolean closed;
+    private boolean watchLimitReached;
+    private boolean stateChanged;
+    private long nextStateSave;
+
+    /**
+     * Constructor
+     *
+     * @param root - the root of the Maven repository to watch
+     * @param cutoffTimestamp - the cutoff, e.g. Don't visit anything older
+     * @param stateFile - keeps track of the handled artifacts across restarts, created if not there yet
+     * @param handler - receives each batch of new or changed artifacts and returns those whose jar hasn't landed yet,
+     *                the artifacts it handled have to be written out by the time it returns
+     * @throws IOException if the state file could not be read or no WatchService could be created for the repository
+     */
+    public MavenRepoWatcher(Path root, String cutoffTimestamp, Path stateFile,
+                            Function<List<MavenArtifact>, List<MavenArtifact>> handler) throws IOException {
+        this.root = root;
+        this.walker = new MavenRepoWalker(root, cutoffTimestamp);
+        this.stateFile = stateFile;
+        this.handler = handler;
+        loadState();
+        this.watchService = root.getFileSystem().newWatchService();
+    }
+
+    /**
+     * Watch the repository until this watcher is closed. The repository is
+     * reconciled once up front and then again every reconcileInterval.
+     *
+     * @param reconcileInterval - the time between two reconciliation walks
+     */
+    public void watch(Duration reconcileInterval) {
+        try {
+            reconcile();
+            long nextReconcile = System.nanoTime() + reconcileInterval.toNanos();
+            while (true) {
+                long timeout = nextReconcile - System.nanoTime();
+                WatchKey key = timeout > 0 ? watchService.poll(timeout, TimeUnit.NANOSECONDS) : null;
+                if (key != null) {
+                    handleEvents(key);
+                    if (stateChanged && System.nanoTime() - nextStateSave >= 0) {
+                        saveState();
+                    }
+                } else {
+                    reconcile();
+                    nextReconcile = System.nanoTime() + reconcileInterval.toNanos();
+                }
+            }
+        } catch (ClosedWatchServiceException cwse) {
+            LOGGER.info("Stopped watching " + root);
+        } catch (InterruptedException ie) {
+            LOGGER.info("Interrupted while watching " + root);
+            Thread.currentThread().interrupt();
+        } finally {
+            if (stateChanged) {
+                saveState();
+            }
+        }
+    }
+
+    /**
+     * Walk the groupId and artifactId directories of the repository, register
+     * any of them that are not watched yet and hand over every maven-metadata.xml that changed since it was last
+     * seen, as well as every artifact that is still pending.
+     */
+    void reconcile() {
+        Map<Path, FileTime> candidates = new LinkedHashMap<>();
+        collectChanged(root, candidates);
+        new ArrayList<>(pending.keySet()).forEach(mavenMetadata -> addCandidate(candidates, mavenMetadata));
+        LOGGER.info("Reconciled " + root + ", found " + candidates.size() + " new, changed or pending artifacts");
+        inspect(candidates);
+        saveState();
+    }
+
+    /**
+     * @return the directories currently watched
+     */
+    Set<Path> getWatchedDirectories() {
+        return Set.copyOf(watchKeys.keySet());
+    }
+
+    /**
+     * @return the number of artifacts whose jar hasn't landed yet
+     */
+    int getPendingCount() {
+        return pending.size();
+    }
+
+    // Handle the events queued up for a single watched directory
+    private void handleEvents(WatchKey key) {
+        Path directory = watchedDirectories.get(key);
+        if (directory == null || !key.isValid()) {
+            // Cancelled after its events were queued, e.g. once the pending artifact in it settled
+            if (directory != null) {
+                watchedDirectories.remove(key);
+                watchKeys.remove(directory, key);
+            }
+            return;
+        }
+        Map<Path, FileTime> candidates = new LinkedHashMap<>();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                LOGGER.warn("Missed events for " + directory + ", leaving them to the next reconciliation");
+                continue;
+            }
+            Path child = directory.resolve((Path) event.context());
+            if (pendingVersionDirectories.containsKey(directory)) {
+                // Something landed in the version directory of a pending artifact
+                addCandidate(candidates, pendingVersionDirectories.get(directory));
+            } else if (pendingVersionDirectories.containsKey(child)) {
+                // The version directory of a pending artifact landed
+                register(child);
+                addCandidate(candidates, pendingVersionDirectories.get(child));
+            } else if (isVersionFile(directory, child)) {
+                // Turns out to be a version directory, which landed before its pom and jar
+                unregister(directory);
+            } else if (Files.isDirectory(child, NOFOLLOW_LINKS)) {
+                // The new directory may have been filled before we got to register it
+                collectChanged(child, candidates);
+            } else if (child.endsWith(MAVEN_METADATA)) {
+                addIfChanged(candidates, child);
+            }
+        }
+        if (!key.reset()) {
+            watchedDirectories.remove(key);
+            watchKeys.remove(directory, key);
+        }
+        inspect(candidates);
+    }
+
+    // Register the groupId and artifactId directories below start and collect the new or changed maven-metadata.xml files
+    private void collectChanged(Path start, Map<Path, FileTime> candidates) {
+        try {
+            Files.walkFileTree(start, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (closed) {
+                        return FileVisitResult.TERMINATE;
+                    }
+                    if (isVersionDirectory(dir)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    register(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (file.endsWith(MAVEN_METADATA) && isNewOrChanged(file, attrs.lastModifiedTime())) {
+                        candidates.put(file, attrs.lastModifiedTime());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException ioe) {
+                    LOGGER.warn("Could not visit " + file + ": " + ioe.getMessage());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException ioe) {
+            LOGGER.error("Exception thrown during a walk of " + start, ioe);
+        }
+    }
+
+    // Check whether the directory holds a single version of an artifact, going by its pom or jar
+    private static boolean isVersionDirectory(Path dir) {
+        String baseName = versionBaseName(dir);
+        return baseName != null && (Files.exists(dir.resolve(baseName + ".pom")) || Files.exists(dir.resolve(baseName + ".jar")));
+    }
+
+    // Check whether the file is the pom or jar that makes the directory a version directory
+    private static boolean isVersionFile(Path dir, Path file) {
+        String baseName = versionBaseName(dir);
+        String fileName = file.getFileName().toString();
+        return baseName != null && (fileName.equals(baseName + ".pom") || fileName.equals(baseName + ".jar"));
+    }
+
+    // The artifactId-version file name prefix, if the directory were a version directory
+    private static String versionBaseName(Path dir) {
+        Path parent = dir.getParent();
+        return parent == null || parent.getFileName() == null ? null : parent.getFileName() + "-" + dir.getFileName();
+    }
+
+    // Register a directory with the WatchService, unless it is already watched
+    private void register(Path dir) {
+        if (closed || watchLimitReached || watchKeys.containsKey(dir)) {
+            return;
+        }
+        try {
+            WatchKey key = dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+            watchedDirectories.put(key, dir);
+            watchKeys.put(dir, key);
+        } catch (ClosedWatchServiceException cwse) {
+            // Closed in the meantime, the batch at hand still gets settled
+        } catch (IOException ioe) {
+            // Typically the inotify watch limit, from here on reconciliation has to catch up
+            LOGGER.warn("Could not watch " + dir + ", relying on reconciliation for unwatched directories: " + ioe.getMessage());
+            watchLimitReached = true;
+        }
+    }
+
+    // Stop watching a directory
+    private void unregister(Path dir) {
+        WatchKey key = watchKeys.remove(dir);
+        if (key != null) {
+            watchedDirectories.remove(key);
+            key.cancel();
+        }
+    }
+
+    // Add the maven-metadata.xml as candidate if it changed since it was last seen
+    private void addIfChanged(Map<Path, FileTime> candidates, Path mavenMetadata) {
+        try {
+            FileTime lastModified = Files.getLastModifiedTime(mavenMetadata);
+            if (isNewOrChanged(mavenMetadata, lastModified)) {
+                candidates.put(mavenMetadata, lastModified);
+            }
+        } catch (IOException ioe) {
+            LOGGER.warn("Could not read the timestamp of " + mavenMetadata + ": " + ioe.getMessage());
+        }
+    }
+
+    // Add the maven-metadata.xml as candidate, whether it changed or not
+    private void addCandidate(Map<Path, FileTime> candidates, Path mavenMetadata) {
+        try {
+            candidates.put(mavenMetadata, Files.getLastModifiedTime(mavenMetadata));
+        } catch (IOException ioe) {
+            LOGGER.warn("Could not read the timestamp of " + mavenMetadata + ", no longer waiting for it: " + ioe.getMessage());
+            removePending(mavenMetadata);
+        }
+    }
+
+    // Check whether the maven-metadata.xml changed since it was last handled
+    private boolean isNewOrChanged(Path mavenMetadata, FileTime lastModified) {
+        FileTime handled = lastSeen.get(mavenMetadata);
+        return handled == null || lastModified.compareTo(handled) > 0;
+    }
+
+    // Convert the candidate maven-metadata.xml files into artifacts, hand them over and keep track of what is settled
+    private void inspect(Map<Path, FileTime> candidates) {
+        Map<MavenArtifact, Path> artifacts = new LinkedHashMap<>();
+        candidates.forEach((mavenMetadata, lastModified) -> walker.getArtifactToInspect(mavenMetadata).findFirst().ifPresentOrElse(
+                artifact -> artifacts.put(artifact, mavenMetadata),
+                () -> settle(mavenMetadata, lastModified)));
+        if (artifacts.isEmpty()) {
+            return;
+        }
+
+        List<MavenArtifact> toHandle = new ArrayList<>(artifacts.keySet());
+        for (int from = 0; from < toHandle.size() && !closed; from += BATCH_SIZE) {
+            List<MavenArtifact> batch = toHandle.subList(from, Math.min(from + BATCH_SIZE, toHandle.size()));
+            Set<MavenArtifact> retry = new HashSet<>(handler.apply(batch));
+            for (MavenArtifact artifact : batch) {
+                Path mavenMetadata = artifacts.get(artifact);
+                if (retry.contains(artifact)) {
+                    addPending(mavenMetadata, artifact.path.getParent());
+                } else {
+                    settle(mavenMetadata, candidates.get(mavenMetadata));
+                }
+            }
+        }
+    }
+
+    // Remember the maven-metadata.xml as handled
+    private void settle(Path mavenMetadata, FileTime lastModified) {
+        if (!lastModified.equals(lastSeen.put(mavenMetadata, lastModified))) {
+            stateChanged = true;
+        }
+        removePending(mavenMetadata);
+    }
+
+    // Wait for the jar of an artifact to land in its version directory
+    private void addPending(Path mavenMetadata, Path versionDirectory) {
+        Path previous = pending.put(mavenMetadata, versionDirectory);
+        if (previous != null && !previous.equals(versionDirectory)) {
+            pendingVersionDirectories.remove(previous);
+            unregister(previous);
+        }
+        pendingVersionDirectories.put(versionDirectory, mavenMetadata);
+        if (Files.isDirectory(versionDirectory)) {
+            register(versionDirectory);
+        }
+    }
+
+    // Stop waiting for the jar of an artifact
+    private void removePending(Path mavenMetadata) {
+        Path versionDirectory = pending.remove(mavenMetadata);
+        if (versionDirectory != null) {
+            pendingVersionDirectories.remove(versionDirectory);
+            unregister(versionDirectory);
+        }
+    }
+
+    // Read the timestamps of the handled maven-metadata.xml files, one per line after their path
+    private void loadState() throws IOException {
+        if (!Files.exists(stateFile)) {
+            return;
+        }
+        try (var lines = Files.lines(stateFile, StandardCharsets.UTF_8)) {
+            lines.forEach(line -> {
+                String[] values = line.split(STATE_SEPARATOR, 2);
+                try {
+                    lastSeen.put(root.resolve(values[1]), FileTime.from(Instant.parse(values[0])));
+                } catch (ArrayIndexOutOfBoundsException | DateTimeParseException e) {
+                    LOGGER.warn("Skipping malformed line in " + stateFile + ": " + line);
+                }
+            });
+        }
+        LOGGER.info("Resuming from " + stateFile + " with " + lastSeen.size() + " handled artifacts");
+    }
+
+    // Write the timestamps of the handled maven-metadata.xml files next to the state file and move them into place
+    private void saveState() {
+        Path tempFile = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+        try {
+            try (var writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                for (Map.Entry<Path, FileTime> entry : lastSeen.entrySet()) {
+                    writer.write(entry.getValue().toInstant() + STATE_SEPARATOR + root.relativize(entry.getKey()));
+                    writer.newLine();
+                }
+            }
+            Files.move(tempFile, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            stateChanged = false;
+        } catch (IOException ioe) {
+            LOGGER.error("Saving the state to " + stateFile + " failed, a restart may handle artifacts again", ioe);
+        }
+        nextStateSave = System.nanoTime() + STATE_SAVE_INTERVAL_NANOS;
+    }
+
+    /**
+     * Stop watching, a running {@link #watch(Duration)} returns once the batch
+     * at hand is handled and the state is saved
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            watchService.close();
+        } catch (IOException ioe) {
+            LOGGER.error("Failed to close the WatchService for " + root, ioe);
+        }
+    }
+}
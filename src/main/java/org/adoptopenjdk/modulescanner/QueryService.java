@@ -0,0 +1,183 @@
+package org.adoptopenjdk.modulescanner;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+
+/**
+ * This class is responsible for serving lookups over a result file through a
+ * local-only HTTP server.
+ *
+ * Every endpoint answers with the header line and the matching result lines,
+ * or with just the header line and a 404 when nothing matches:
+ * <pre>
+ * /modules?name=org.slf4j                     artifacts providing the module
+ * /modules?prefix=org.slf4j                   artifacts providing modules with that prefix
+ * /artifacts?coordinates=org.slf4j:slf4j-api  the artifact itself
+ * /requires?module=java.xml                   artifacts whose module requires the module
+ * /violations?api=sun.misc.Unsafe             artifacts using the JDK internal API
+ * </pre>
+ * The result file is checked for changes periodically. A changed file is loaded
+ * in the background and swapped in once loaded, requests keep being answered
+ * from the previous index in the meantime. A result file that is rewritten in
+ * place may be picked up halfway, so replace it by moving a finished file over it.
+ * A result file that is appended to, like the output of a watch, can be served
+ * while it grows: it is loaded up to its last complete line.
+ */
+public class QueryService implements Closeable {
+
+    private static final Logger LOGGER = LogManager.getLogger("QueryService");
+
+    private final Path resultFile;
+    private final AtomicReference<ResultIndex> index = new AtomicReference<>();
+    private final HttpServer server;
+    private final ExecutorService requestExecutor;
+    private final ScheduledExecutorService reloadExecutor;
+    private FileTime loadedVersion;
+
+    /**
+     * Constructor, loads the result file and starts serving
+     *
+     * @param resultFile - the result file to serve lookups over
+     * @param port - the port on the loopback address to listen on, 0 for any free port
+     * @param reloadInterval - the time between two checks for a changed result file
+     * @throws IOException if the result file could not be loaded or the port could not be bound
+     */
+    public QueryService(Path resultFile, int port, Duration reloadInterval) throws IOException {
+        this.resultFile = resultFile;
+        reloadIfChanged();
+
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/modules", exchange -> respond(exchange, (results, parameters) -> parameters.containsKey("prefix")
+                ? results.findByModuleNamePrefix(parameters.get("prefix"))
+                : results.findByModuleName(required(parameters, "name"))));
+        server.createContext("/artifacts", exchange -> respond(exchange, (results, parameters) -> {
+            String[] coordinates = required(parameters, "coordinates").split(":", 2);
+            if (coordinates.length < 2) {
+                throw new IllegalArgumentException("Expected coordinates as groupId:artifactId");
+            }
+            return results.findByCoordinates(coordinates[0], coordinates[1]);
+        }));
+        server.createContext("/requires", exchange -> respond(exchange, (results, parameters) -> results.findRequiring(required(parameters, "module"))));
+        server.createContext("/violations", exchange -> respond(exchange, (results, parameters) -> results.findViolating(required(parameters, "api"))));
+        this.requestExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        server.setExecutor(requestExecutor);
+        server.start();
+
+        this.reloadExecutor = Executors.newSingleThreadScheduledExecutor();
+        long reloadMillis = reloadInterval.toMillis();
+        reloadExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                reloadIfChanged();
+            } catch (IOException | RuntimeException e) {
+                LOGGER.error("Reloading " + resultFile + " failed, still serving the previous version", e);
+            }
+        }, reloadMillis, reloadMillis, TimeUnit.MILLISECONDS);
+
+        LOGGER.info("Serving lookups over " + resultFile + " at http://" + server.getAddress().getHostString() + ":" + getPort());
+    }
+
+    /**
+     * @return the port the service listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Load the result file and swap it in, if it changed since it was last loaded
+     *
+     * @throws IOException if the result file could not be loaded
+     */
+    synchronized void reloadIfChanged() throws IOException {
+        FileTime version = Files.getLastModifiedTime(resultFile);
+        if (version.equals(loadedVersion)) {
+            return;
+        }
+        index.set(ResultIndex.load(resultFile));
+        loadedVersion = version;
+    }
+
+    // Answer a lookup with the header line and the result lines found
+    private void respond(HttpExchange exchange, BiFunction<ResultIndex, Map<String, String>, List<String>> lookup) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            // Take the index once, so a swap halfway doesn't mix up two versions
+            ResultIndex current = index.get();
+            List<String> lines;
+            try {
+                lines = lookup.apply(current, parseQuery(exchange.getRequestURI().getRawQuery()));
+            } catch (IllegalArgumentException iae) {
+                byte[] message = (iae.getMessage() + "\n").getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(400, message.length);
+                exchange.getResponseBody().write(message);
+                return;
+            }
+
+            StringBuilder body = new StringBuilder(current.getHeader()).append('\n');
+            lines.forEach(line -> body.append(line).append('\n'));
+            byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/csv; charset=UTF-8");
+            exchange.sendResponseHeaders(lines.isEmpty() ? 404 : 200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // Get a query parameter that has to be there
+    private static String required(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Missing query parameter: " + name);
+        }
+        return value;
+    }
+
+    // Parse the raw query string into its parameters
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery != null) {
+            for (String parameter : rawQuery.split("&")) {
+                String[] pair = parameter.split("=", 2);
+                parameters.put(URLDecoder.decode(pair[0], StandardCharsets.UTF_8),
+                        pair.length > 1 ? URLDecoder.decode(pair[1], StandardCharsets.UTF_8) : "");
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * Stop serving lookups and checking for changes
+     */
+    @Override
+    public void close() {
+        reloadExecutor.shutdownNow();
+        server.stop(0);
+        requestExecutor.shutdownNow();
+    }
+}
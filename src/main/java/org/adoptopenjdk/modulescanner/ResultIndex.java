@@ -0,0 +1,305 @@
+package org.adoptopenjdk.modulescanner;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * This class is responsible for answering lookups over a result file written by
+ * {@link SeparatedValuesPrinter}, without going through the file again.
+ *
+ * The lines are kept as they are, the indexes only hold line numbers: a sorted
+ * array of module names for exact and prefix lookups, a hash map on
+ * groupId:artifactId and inverted indexes from required modules and from
+ * jdeps violations (by JDK internal API) to the lines mentioning them.
+ * An index is immutable once loaded, so it can be shared between threads.
+ *
+ * A result file that is still being appended to, e.g. by a watch, is loaded up
+ * to its last complete line: a gzipped file that lacks its trailer is read up
+ * to where it ends. An unterminated last line is left out if the file was cut
+ * short or grew while being read, or if it doesn't hold all columns.
+ */
+public class ResultIndex {
+
+    private static final Logger LOGGER = LogManager.getLogger("ResultIndex");
+
+    private static final String DELIMITER = ",";
+    private static final String LIST_DELIMITER = " + ";
+    private static final String BLANK = "-";
+    private static final int[] NO_LINES = new int[0];
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+
+    private final String header;
+    private final String[] lines;
+    private final String[] moduleNames;
+    private final int[][] moduleNameLines;
+    private final Map<String, int[]> coordinatesLines;
+    private final Map<String, int[]> requiresLines;
+    private final Map<String, int[]> violationLines;
+
+    private ResultIndex(String header, String[] lines, Map<String, List<Integer>> modules, Map<String, List<Integer>> coordinates,
+                        Map<String, List<Integer>> requires, Map<String, List<Integer>> violations) {
+        this.header = header;
+        this.lines = lines;
+        this.moduleNames = modules.keySet().toArray(new String[0]);
+        this.moduleNameLines = modules.values().stream().map(ResultIndex::toArray).toArray(int[][]::new);
+        this.coordinatesLines = toArrays(coordinates);
+        this.requiresLines = toArrays(requires);
+        this.violationLines = toArrays(violations);
+    }
+
+    /**
+     * Load a result file, gzipped when its name ends with .gz
+     *
+     * @param resultFile - the result file to load
+     * @return the index over the result file
+     * @throws IOException if the result file could not be read
+     */
+    public static ResultIndex load(Path resultFile) throws IOException {
+        ResultLines resultLines = readLines(resultFile);
+        Iterator<String> completeLines = resultLines.lines.iterator();
+        if (!completeLines.hasNext()) {
+            throw new IOException("No header line in " + resultFile);
+        }
+        String header = completeLines.next();
+        List<String> columns = Arrays.asList(header.split(DELIMITER));
+        int groupIdColumn = columnIndex(columns, "groupId");
+        int artifactIdColumn = columnIndex(columns, "artifactId");
+        int moduleNameColumn = columnIndex(columns, "moduleName");
+        int dependenciesColumn = columnIndex(columns, "moduleDependencies");
+        int violationsColumn = columnIndex(columns, "jdepsViolations");
+
+        List<String> lines = new ArrayList<>();
+        Map<String, List<Integer>> modules = new TreeMap<>();
+        Map<String, List<Integer>> coordinates = new HashMap<>();
+        Map<String, List<Integer>> requires = new HashMap<>();
+        Map<String, List<Integer>> violations = new HashMap<>();
+
+        while (completeLines.hasNext()) {
+            String line = completeLines.next();
+            // Violations come last and may contain the delimiter themselves
+            String[] values = line.split(DELIMITER, columns.size());
+            if (values.length < columns.size()) {
+                if (resultLines.unterminated && !completeLines.hasNext()) {
+                    LOGGER.info("Leaving out the unterminated last line of " + resultFile + ", it is probably still being written");
+                } else {
+                    LOGGER.warn("Skipping malformed line in " + resultFile + ": " + line);
+                }
+                continue;
+            }
+            int lineNumber = lines.size();
+            lines.add(line);
+            add(modules, values[moduleNameColumn], lineNumber);
+            add(coordinates, values[groupIdColumn] + ":" + values[artifactIdColumn], lineNumber);
+            for (String dependency : split(values[dependenciesColumn])) {
+                add(requires, dependency, lineNumber);
+            }
+            for (String violation : split(values[violationsColumn])) {
+                // A jdeps violation starts with the JDK internal API, followed by the suggested replacement
+                add(violations, violation.trim().split("\\s+", 2)[0], lineNumber);
+            }
+        }
+        LOGGER.info("Indexed " + lines.size() + " lines and " + modules.size() + " module names from " + resultFile);
+        return new ResultIndex(header, lines.toArray(new String[0]), modules, coordinates, requires, violations);
+    }
+
+    // Read the lines of the result file as far as the file goes, leaving out a last line that is known to be cut off
+    private static ResultLines readLines(Path resultFile) throws IOException {
+        List<String> lines = new ArrayList<>();
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        byte[] bytes = new byte[READ_BUFFER_SIZE];
+        long sizeBefore = Files.size(resultFile);
+        boolean cutShort = false;
+        // Split on bytes rather than characters, a decoder would lose what it read before running into the end
+        try (var in = newInputStream(resultFile)) {
+            int read;
+            while ((read = in.read(bytes)) >= 0) {
+                int start = 0;
+                for (int i = 0; i < read; i++) {
+                    if (bytes[i] == '\n') {
+                        line.write(bytes, start, i - start);
+                        lines.add(toLine(line));
+                        line.reset();
+                        start = i + 1;
+                    }
+                }
+                line.write(bytes, start, read - start);
+            }
+        } catch (EOFException eofe) {
+            LOGGER.info("Reading " + resultFile + " up to where it ends, it is probably still being written: " + eofe.getMessage());
+            cutShort = true;
+        }
+        if (line.size() == 0) {
+            return new ResultLines(lines, false);
+        }
+        if (cutShort || Files.size(resultFile) != sizeBefore) {
+            LOGGER.info("Leaving out the unterminated last line of " + resultFile + ", it is still being written");
+            return new ResultLines(lines, false);
+        }
+        // A finished file may simply lack the final line separator
+        lines.add(toLine(line));
+        return new ResultLines(lines, true);
+    }
+
+    // Decode a line, without the carriage return of a CRLF line ending
+    private static String toLine(ByteArrayOutputStream line) {
+        String decoded = new String(line.toByteArray(), StandardCharsets.UTF_8);
+        return decoded.endsWith("\r") ? decoded.substring(0, decoded.length() - 1) : decoded;
+    }
+
+    // Open the result file, unzipping it on the fly if need be
+    private static InputStream newInputStream(Path resultFile) throws IOException {
+        InputStream in = Files.newInputStream(resultFile);
+        try {
+            return ResultWriter.isGzipped(resultFile) ? new GZIPInputStream(in) : in;
+        } catch (IOException ioe) {
+            in.close();
+            throw ioe;
+        }
+    }
+
+    // The lines read from a result file, the last one may lack its line separator
+    private static class ResultLines {
+
+        final List<String> lines;
+        final boolean unterminated;
+
+        ResultLines(List<String> lines, boolean unterminated) {
+            this.lines = lines;
+            this.unterminated = unterminated;
+        }
+    }
+
+    // Find a column by name in the header line
+    private static int columnIndex(List<String> columns, String name) throws IOException {
+        int index = columns.indexOf(name);
+        if (index < 0) {
+            throw new IOException("No " + name + " column in the header line");
+        }
+        return index;
+    }
+
+    // Split a list value, a blank value is an empty list
+    private static List<String> split(String value) {
+        return BLANK.equals(value) ? List.of() : Arrays.asList(value.split(Pattern.quote(LIST_DELIMITER)));
+    }
+
+    // Add a line number for a key, unless the key is blank
+    private static void add(Map<String, List<Integer>> index, String key, int lineNumber) {
+        if (!BLANK.equals(key) && !key.isEmpty()) {
+            index.computeIfAbsent(key, k -> new ArrayList<>()).add(lineNumber);
+        }
+    }
+
+    // Convert boxed line numbers into a compact array
+    private static int[] toArray(List<Integer> lineNumbers) {
+        return lineNumbers.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // Convert the boxed line numbers of an index into compact arrays
+    private static Map<String, int[]> toArrays(Map<String, List<Integer>> index) {
+        Map<String, int[]> arrays = new HashMap<>(index.size() * 4 / 3 + 1);
+        index.forEach((key, lineNumbers) -> arrays.put(key, toArray(lineNumbers)));
+        return arrays;
+    }
+
+    /**
+     * @return the header line of the result file
+     */
+    public String getHeader() {
+        return header;
+    }
+
+    /**
+     * @return the number of result lines
+     */
+    public int size() {
+        return lines.length;
+    }
+
+    /**
+     * Find the lines of the artifacts providing a module, e.g. to check whether a module name is taken
+     *
+     * @param moduleName - the exact module name
+     * @return the result lines, empty if no artifact provides the module
+     */
+    public List<String> findByModuleName(String moduleName) {
+        int index = Arrays.binarySearch(moduleNames, moduleName);
+        return index < 0 ? List.of() : toLines(moduleNameLines[index]);
+    }
+
+    /**
+     * Find the lines of the artifacts providing a module whose name starts with the prefix
+     *
+     * @param prefix - the start of the module names
+     * @return the result lines, ordered by module name
+     */
+    public List<String> findByModuleNamePrefix(String prefix) {
+        int from = insertionPoint(prefix);
+        return IntStream.range(from, moduleNames.length)
+                .takeWhile(i -> moduleNames[i].startsWith(prefix))
+                .flatMap(i -> Arrays.stream(moduleNameLines[i]))
+                .mapToObj(lineNumber -> lines[lineNumber])
+                .collect(Collectors.toList());
+    }
+
+    // The index of the first module name not smaller than the given one
+    private int insertionPoint(String moduleName) {
+        int index = Arrays.binarySearch(moduleNames, moduleName);
+        return index < 0 ? -index - 1 : index;
+    }
+
+    /**
+     * Find the lines of an artifact
+     *
+     * @param groupId - the Maven Group Id
+     * @param artifactId - the Maven Artifact Id
+     * @return the result lines, more than one if the result file holds several versions
+     */
+    public List<String> findByCoordinates(String groupId, String artifactId) {
+        return toLines(coordinatesLines.getOrDefault(groupId + ":" + artifactId, NO_LINES));
+    }
+
+    /**
+     * Find the lines of the artifacts whose module requires the given module
+     *
+     * @param moduleName - the required module
+     * @return the result lines
+     */
+    public List<String> findRequiring(String moduleName) {
+        return toLines(requiresLines.getOrDefault(moduleName, NO_LINES));
+    }
+
+    /**
+     * Find the lines of the artifacts jdeps reported for using the given JDK internal API
+     *
+     * @param internalApi - the JDK internal API, e.g. sun.misc.Unsafe
+     * @return the result lines
+     */
+    public List<String> findViolating(String internalApi) {
+        return toLines(violationLines.getOrDefault(internalApi, NO_LINES));
+    }
+
+    // Look up the lines for the given line numbers
+    private List<String> toLines(int[] lineNumbers) {
+        return Arrays.stream(lineNumbers).mapToObj(lineNumber -> lines[lineNumber]).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,284 @@
+package org.adoptopenjdk.modulescanner;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This class is responsible for writing result lines to the output file.
+ *
+ * Lines are queued by the inspecting threads and picked up by a single writer
+ * thread. The queue is bounded, so inspecting threads wait when they get ahead
+ * of the writer. The writer thread encodes the lines as UTF-8 into a large
+ * reusable buffer and writes that buffer to a FileChannel whenever it is full
+ * or no lines came in for a while. Output can be gzipped and, at the cost of holding all lines in memory
+ * until closed, sorted by groupId:artifactId.
+ */
+class ResultWriter implements Closeable {
+
+    private static final Logger LOGGER = LogManager.getLogger("ResultWriter");
+
+    private static final String GZIP_SUFFIX = ".gz";
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int GZIP_BUFFER_SIZE = 1 << 16;
+    private static final long IDLE_FLUSH_MILLIS = 1000;
+    private static final int QUEUE_CAPACITY = 8192;
+    private static final Row END = new Row(null, null, null);
+
+    /**
+     * The order in which lines end up in the output file
+     */
+    enum Order {
+        /** As soon as they come in, the fastest */
+        UNORDERED,
+        /** Sorted by groupId:artifactId once all lines are in, deterministic */
+        SORTED
+    }
+
+    private final Path output;
+    private final Order order;
+    private final FileChannel fileChannel;
+    private final OutputStream gzipStream;
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final BlockingQueue<Row> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final List<Row> sortedRows = new ArrayList<>();
+    private final Thread writerThread;
+    private volatile IOException failure;
+
+    /**
+     * Constructor
+     *
+     * @param output - the file to write to, gzipped when the name ends with .gz
+     * @param order - the order in which lines end up in the output file
+     * @param append - append to an existing file instead of replacing it
+     * @throws IOException if the output file could not be opened
+     */
+    ResultWriter(Path output, Order order, boolean append) throws IOException {
+        this.output = output;
+        this.order = order;
+        this.fileChannel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+        if (isGzipped(output)) {
+            // Sync flush, so that lines written by an idle flush can be read back straight away
+            this.gzipStream = new GZIPOutputStream(Channels.newOutputStream(fileChannel), GZIP_BUFFER_SIZE, true);
+            this.channel = Channels.newChannel(gzipStream);
+        } else {
+            this.gzipStream = null;
+            this.channel = fileChannel;
+        }
+        this.writerThread = new Thread(this::run, "ResultWriter");
+        this.writerThread.start();
+    }
+
+    /**
+     * Whether the given file is (to be) gzipped, going by its name
+     *
+     * @param file - the file to check
+     * @return true if the file name ends with .gz
+     */
+    static boolean isGzipped(Path file) {
+        return file.getFileName().toString().endsWith(GZIP_SUFFIX);
+    }
+
+    /**
+     * Queue a header line, which is written ahead of any sorted lines
+     *
+     * @param line - the line to write, without line separator
+     */
+    void writeHeader(String line) {
+        enqueue(new Row(null, line, null));
+    }
+
+    /**
+     * Queue a result line
+     *
+     * @param key - the groupId:artifactId the line is sorted by
+     * @param line - the line to write, without line separator
+     */
+    void write(String key, String line) {
+        enqueue(new Row(key, line, null));
+    }
+
+    /**
+     * Wait until all lines queued so far are written to the output file, lines
+     * held back for sorting excepted
+     *
+     * @throws IOException if writing any of the lines failed
+     */
+    void flush() throws IOException {
+        CountDownLatch flushed = new CountDownLatch(1);
+        enqueue(new Row(null, null, flushed));
+        try {
+            // The writer thread doesn't get to the flush if it gave up halfway
+            while (!flushed.await(IDLE_FLUSH_MILLIS, TimeUnit.MILLISECONDS) && writerThread.isAlive()) {
+                LOGGER.debug("Waiting for " + output + " to be flushed");
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while flushing " + output, ie);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // Hand a row over to the writer thread, unless that gave up already, waiting for room in the queue
+    private void enqueue(Row row) {
+        if (failure != null) {
+            throw new UncheckedIOException("Writing to " + output + " failed", failure);
+        }
+        try {
+            queue.put(row);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("Interrupted while queueing a line for " + output));
+        }
+    }
+
+    // The writer thread, encodes and writes rows until the END row comes in
+    private void run() {
+        try {
+            while (true) {
+                Row row = buffer.position() > 0 ? queue.poll(IDLE_FLUSH_MILLIS, TimeUnit.MILLISECONDS) : queue.take();
+                if (row == null) {
+                    flushBuffer();
+                } else if (row == END) {
+                    break;
+                } else if (row.flushed != null) {
+                    flushBuffer();
+                    row.flushed.countDown();
+                } else if (order == Order.SORTED && row.key != null) {
+                    sortedRows.add(row);
+                } else {
+                    encode(row.line);
+                }
+            }
+            sortedRows.sort(Comparator.comparing((Row row) -> row.key).thenComparing(row -> row.line));
+            for (Row row : sortedRows) {
+                encode(row.line);
+            }
+            flushBuffer();
+        } catch (IOException ioe) {
+            LOGGER.error("Writing to " + output + " failed", ioe);
+            failure = ioe;
+            discardUntilEnd();
+        } catch (InterruptedException ie) {
+            LOGGER.error("Interrupted while writing to " + output);
+            failure = new IOException("Interrupted while writing to " + output, ie);
+            discardUntilEnd();
+        }
+    }
+
+    // Keep taking rows after a failure, so threads putting rows into the full queue don't wait forever
+    private void discardUntilEnd() {
+        while (true) {
+            try {
+                Row row = queue.take();
+                if (row == END) {
+                    return;
+                }
+                if (row.flushed != null) {
+                    row.flushed.countDown();
+                }
+            } catch (InterruptedException ie) {
+                // Stopping here would leave those threads waiting after all
+                LOGGER.debug("Interrupted while discarding lines for " + output);
+            }
+        }
+    }
+
+    // Encode a line into the buffer, writing the buffer out whenever it fills up
+    private void encode(String line) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(line + '\n');
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (result.isUnderflow()) {
+                break;
+            }
+            if (result.isOverflow()) {
+                writeBuffer();
+            } else {
+                result.throwException();
+            }
+        }
+        encoder.reset();
+    }
+
+    // Write out the buffered bytes and push them through to the file
+    private void flushBuffer() throws IOException {
+        writeBuffer();
+        if (gzipStream != null) {
+            gzipStream.flush();
+        }
+    }
+
+    // Write out the buffered bytes and empty the buffer for reuse
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Write out all queued lines and close the output file
+     *
+     * @throws IOException if writing any of the lines failed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            queue.put(END);
+            writerThread.join();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing " + output, ie);
+        } finally {
+            channel.close();
+            fileChannel.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // A line and the key it is sorted by, header lines have no key, flush requests only a latch
+    private static class Row {
+
+        final String key;
+        final String line;
+        final CountDownLatch flushed;
+
+        Row(String key, String line, CountDownLatch flushed) {
+            this.key = key;
+            this.line = line;
+            this.flushed = flushed;
+        }
+    }
+}
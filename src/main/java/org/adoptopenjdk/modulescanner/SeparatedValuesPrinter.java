@@ -1,6 +1,5 @@
 package org.adoptopenjdk.modulescanner;
 
-import java.io.PrintWriter;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.adoptopenjdk.modulescanner.MavenRepoWalker.MavenArtifact;
@@ -9,11 +8,11 @@ import org.adoptopenjdk.modulescanner.JdepsInspector.JdepsInspectResult;
 
 class SeparatedValuesPrinter {
 
-	private final PrintWriter out;
+	private final ResultWriter out;
 	private final String delimiter;
 	private final AtomicInteger lineCounter;
 
-	SeparatedValuesPrinter(PrintWriter out, String delimiter) {
+	SeparatedValuesPrinter(ResultWriter out, String delimiter) {
 		this.out = out;
 		this.delimiter = delimiter;
 		this.lineCounter = new AtomicInteger();
@@ -62,11 +61,11 @@ class SeparatedValuesPrinter {
 	}
 
 	void printHeaderLine() {
-		out.println(generateHeaderLine());
+		out.writeHeader(generateHeaderLine());
 	}
 
 	void printAndCountLine(MavenArtifact artifact, ModuleInspectResult mir, JdepsInspectResult jir) {
-		out.println(generateLine(artifact, mir, jir));
+		out.write(artifact.groupId + ":" + artifact.artifactId, generateLine(artifact, mir, jir));
 		lineCounter.incrementAndGet();
 	}
 }
@@ -0,0 +1,225 @@
+package org.adoptopenjdk.modulescanner;
+
+import org.adoptopenjdk.modulescanner.MavenRepoWalker.MavenArtifact;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * This class is responsible for drawing a reproducible stratified random sample
+ * of Maven artifacts and for estimating population proportions from the
+ * inspection results of that sample.
+ *
+ * The sample is allocated to the strata proportionally to their size. Estimates
+ * use the stratified estimator with a finite population correction and report a
+ * 95% confidence interval based on the normal approximation.
+ */
+class StratifiedSample {
+
+    private static final double Z_95 = 1.959964;
+    private static final int MIN_PER_STRATUM = 2;
+
+    /**
+     * The ways in which the population can be divided into strata
+     */
+    enum Stratification {
+        /** By top-level groupId, e.g. org or com */
+        GROUP(artifact -> artifact.groupId.split("\\.", 2)[0]),
+        /** By year of the lastUpdated timestamp */
+        YEAR(artifact -> artifact.lastUpdated == null ? "-" : artifact.lastUpdated.substring(0, 4));
+
+        final Function<MavenArtifact, String> stratum;
+
+        Stratification(Function<MavenArtifact, String> stratum) {
+            this.stratum = stratum;
+        }
+    }
+
+    private final Map<String, Stratum> strata;
+    private final int populationSize;
+
+    private StratifiedSample(Map<String, Stratum> strata, int populationSize) {
+        this.strata = strata;
+        this.populationSize = populationSize;
+    }
+
+    /**
+     * Draw a sample from the given population, the same population and seed always give the same sample
+     *
+     * @param population - the artifacts to sample from
+     * @param stratification - how to divide the population into strata
+     * @param sampleSize - the requested total sample size
+     * @param seed - the seed for the random selection
+     * @return the drawn sample
+     */
+    static StratifiedSample draw(Stream<MavenArtifact> population, Stratification stratification, int sampleSize, long seed) {
+        // Sort strata and their members so the outcome doesn't depend on the order the repository was walked in
+        Map<String, List<MavenArtifact>> members = population.collect(Collectors.groupingBy(stratification.stratum, TreeMap::new, Collectors.toList()));
+        int populationSize = members.values().stream().mapToInt(List::size).sum();
+        Random random = new Random(seed);
+
+        Map<String, Stratum> strata = new TreeMap<>();
+        members.forEach((name, artifacts) -> {
+            artifacts.sort(Comparator.comparing((MavenArtifact artifact) -> artifact.groupId)
+                                     .thenComparing(artifact -> artifact.artifactId)
+                                     .thenComparing(artifact -> artifact.version));
+            int allocation = (int) Math.round((double) sampleSize * artifacts.size() / populationSize);
+            int stratumSampleSize = Math.min(artifacts.size(), Math.max(MIN_PER_STRATUM, allocation));
+            Collections.shuffle(artifacts, random);
+            strata.put(name, new Stratum(artifacts.size(), List.copyOf(artifacts.subList(0, stratumSampleSize))));
+        });
+        return new StratifiedSample(strata, populationSize);
+    }
+
+    /**
+     * @return the sampled artifacts, to be inspected
+     */
+    List<MavenArtifact> getArtifacts() {
+        return strata.values().stream().flatMap(stratum -> stratum.sample.stream()).collect(Collectors.toList());
+    }
+
+    /**
+     * @return the number of artifacts that were sampled from
+     */
+    int getPopulationSize() {
+        return populationSize;
+    }
+
+    /**
+     * Estimate the proportion of the population that has a property. Sampled
+     * artifacts without a result, e.g. because they could not be inspected,
+     * are left out, as are strata without any result at all.
+     *
+     * @param results - the inspection results of the sampled artifacts
+     * @param property - the property to estimate the proportion for
+     * @param <T> - the type of inspection result
+     * @return the estimate
+     */
+    <T> Estimate estimate(Map<MavenArtifact, T> results, Predicate<T> property) {
+        return estimate(results, result -> true, property);
+    }
+
+    /**
+     * Estimate the proportion of a domain of the population that has a property,
+     * e.g. of the artifacts jdeps could analyse. The domain size is estimated
+     * from the sample as well, so this is a ratio estimate, its confidence
+     * interval uses the linearized variance. Sampled artifacts without a result
+     * are left out, as are strata without any result at all.
+     *
+     * @param results - the inspection results of the sampled artifacts
+     * @param domain - the results that belong to the domain
+     * @param property - the property to estimate the proportion within the domain for
+     * @param <T> - the type of inspection result
+     * @return the estimate, its sample size the number of sampled artifacts in the domain
+     */
+    <T> Estimate estimate(Map<MavenArtifact, T> results, Predicate<T> domain, Predicate<T> property) {
+        Map<Stratum, List<T>> inspected = new LinkedHashMap<>();
+        for (Stratum stratum : strata.values()) {
+            List<T> stratumResults = stratum.sample.stream().filter(results::containsKey).map(results::get).collect(Collectors.toList());
+            if (!stratumResults.isEmpty()) {
+                inspected.put(stratum, stratumResults);
+            }
+        }
+        int sampleSize = (int) inspected.values().stream().flatMap(List::stream).filter(domain).count();
+
+        // Estimated domain size and number of domain members with the property
+        double domainSize = 0;
+        double withProperty = 0;
+        for (Map.Entry<Stratum, List<T>> entry : inspected.entrySet()) {
+            double size = entry.getKey().size;
+            double n = entry.getValue().size();
+            domainSize += size * entry.getValue().stream().filter(domain).count() / n;
+            withProperty += size * entry.getValue().stream().filter(domain.and(property)).count() / n;
+        }
+        if (sampleSize == 0) {
+            return new Estimate(0, 0, 0, 0, 0);
+        }
+        double proportion = withProperty / domainSize;
+
+        double variance = 0;
+        for (Map.Entry<Stratum, List<T>> entry : inspected.entrySet()) {
+            double size = entry.getKey().size;
+            double n = entry.getValue().size();
+            if (n > 1) {
+                // Residuals of the ratio, members outside the domain count as zero
+                double[] residuals = entry.getValue().stream()
+                        .mapToDouble(result -> (domain.and(property).test(result) ? 1 : 0) - proportion * (domain.test(result) ? 1 : 0))
+                        .toArray();
+                double mean = Arrays.stream(residuals).sum() / n;
+                double residualVariance = Arrays.stream(residuals).map(z -> (z - mean) * (z - mean)).sum() / (n - 1);
+                double finitePopulationCorrection = 1 - n / size;
+                variance += size * size * finitePopulationCorrection * residualVariance / n;
+            }
+        }
+        variance /= domainSize * domainSize;
+        double margin = Z_95 * Math.sqrt(variance);
+        return new Estimate(proportion, Math.max(0, proportion - margin), Math.min(1, proportion + margin), sampleSize, (int) Math.round(domainSize));
+    }
+
+    // A single stratum, its population size and the artifacts sampled from it
+    private static class Stratum {
+
+        final int size;
+        final List<MavenArtifact> sample;
+
+        Stratum(int size, List<MavenArtifact> sample) {
+            this.size = size;
+            this.sample = sample;
+        }
+    }
+
+    /**
+     * An estimated proportion with its 95% confidence interval
+     */
+    static class Estimate {
+
+        /** The estimated proportion */
+        final double proportion;
+        /** The lower bound of the 95% confidence interval */
+        final double lowerBound;
+        /** The upper bound of the 95% confidence interval */
+        final double upperBound;
+        /** The number of inspected artifacts the estimate is based on */
+        final int sampleSize;
+        /** The number of artifacts the estimate applies to */
+        final int populationSize;
+
+        /**
+         * Constructor
+         *
+         * @param proportion - The estimated proportion
+         * @param lowerBound - The lower bound of the 95% confidence interval
+         * @param upperBound - The upper bound of the 95% confidence interval
+         * @param sampleSize - The number of inspected artifacts
+         * @param populationSize - The number of artifacts the estimate applies to
+         */
+        Estimate(double proportion, double lowerBound, double upperBound, int sampleSize, int populationSize) {
+            this.proportion = proportion;
+            this.lowerBound = lowerBound;
+            this.upperBound = upperBound;
+            this.sampleSize = sampleSize;
+            this.populationSize = populationSize;
+        }
+
+        @Override
+        public String toString() {
+            return "Estimate{" +
+                    "proportion=" + proportion +
+                    ", lowerBound=" + lowerBound +
+                    ", upperBound=" + upperBound +
+                    ", sampleSize=" + sampleSize +
+                    ", populationSize=" + populationSize +
+                    '}';
+        }
+    }
+}
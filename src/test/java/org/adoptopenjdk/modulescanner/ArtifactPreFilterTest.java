@@ -0,0 +1,71 @@
+package org.adoptopenjdk.modulescanner;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.adoptopenjdk.modulescanner.ArtifactPreFilter.SkipReason;
+import org.adoptopenjdk.modulescanner.MavenRepoWalker.MavenArtifact;
+import org.junit.jupiter.api.Test;
+
+class ArtifactPreFilterTest {
+
+    @Test
+    void testAcceptsJarsInTestRepo() {
+        ArtifactPreFilter preFilter = new ArtifactPreFilter();
+        MavenRepoWalker repoWalker = new MavenRepoWalker(Paths.get("./src/test/resources/test-maven-repo"), "20170101000000");
+
+        assertEquals(3, repoWalker.getArtifactsToInspect().filter(preFilter).count());
+        assertEquals(3, preFilter.getAcceptedCount());
+    }
+
+    @Test
+    void testClassifiesSkips() throws Exception {
+        Path repo = Files.createTempDirectory("repo-");
+        ArtifactPreFilter preFilter = new ArtifactPreFilter();
+
+        assertFalse(preFilter.test(artifact(repo, "parent", "<project><packaging>pom</packaging></project>")));
+        assertFalse(preFilter.test(artifact(repo, "android", "<project><packaging>aar</packaging></project>")));
+        assertFalse(preFilter.test(artifact(repo, "defaulted", "<project></project>")));
+        assertFalse(preFilter.test(artifact(repo, "bundle", "<project><packaging>bundle</packaging></project>")));
+        assertFalse(preFilter.test(artifact(repo, "plugin", "<project><packaging>maven-plugin</packaging></project>")));
+        assertFalse(preFilter.test(new MavenArtifact("org.example", "gone", "1.0", repo.resolve("gone/1.0/gone-1.0.jar"))));
+
+        MavenArtifact empty = artifact(repo, "empty", "<project></project>");
+        Files.createFile(empty.path);
+        assertFalse(preFilter.test(empty));
+
+        assertEquals(0, preFilter.getAcceptedCount());
+        assertEquals(1, preFilter.getSkippedCount(SkipReason.POM_PACKAGING));
+        assertEquals(1, preFilter.getSkippedCount(SkipReason.NON_JAR_PACKAGING));
+        assertEquals(3, preFilter.getSkippedCount(SkipReason.MISSING_JAR));
+        assertEquals(1, preFilter.getSkippedCount(SkipReason.MISSING_VERSION_DIRECTORY));
+        assertEquals(1, preFilter.getSkippedCount(SkipReason.EMPTY_JAR));
+    }
+
+    @Test
+    void testRetriesMissingWhenWatching() throws Exception {
+        Path repo = Files.createTempDirectory("repo-");
+        ArtifactPreFilter preFilter = new ArtifactPreFilter(true);
+
+        assertEquals(ArtifactPreFilter.Verdict.RETRY, preFilter.check(new MavenArtifact("org.example", "gone", "1.0", repo.resolve("gone/1.0/gone-1.0.jar"))));
+        MavenArtifact landing = new MavenArtifact("org.example", "landing", "1.0", Files.createDirectories(repo.resolve("landing/1.0")).resolve("landing-1.0.jar"));
+        assertEquals(ArtifactPreFilter.Verdict.RETRY, preFilter.check(landing));
+        // With the pom there, a missing jar isn't coming, e.g. for a relocation pom
+        assertEquals(ArtifactPreFilter.Verdict.SKIP, preFilter.check(artifact(repo, "relocated", "<project></project>")));
+        assertEquals(ArtifactPreFilter.Verdict.SKIP, preFilter.check(artifact(repo, "parent", "<project><packaging>pom</packaging></project>")));
+
+        assertEquals(2, preFilter.getRetriedCount());
+        assertEquals(1, preFilter.getSkippedCount(SkipReason.MISSING_JAR));
+        assertEquals(0, preFilter.getSkippedCount(SkipReason.MISSING_VERSION_DIRECTORY));
+        assertEquals(1, preFilter.getSkippedCount(SkipReason.POM_PACKAGING));
+    }
+
+    // Create a version directory with only a pom in it
+    private static MavenArtifact artifact(Path repo, String artifactId, String pom) throws Exception {
+        Path versionDirectory = Files.createDirectories(repo.resolve(artifactId).resolve("1.0"));
+        Files.writeString(versionDirectory.resolve(artifactId + "-1.0.pom"), pom);
+        return new MavenArtifact("org.example", artifactId, "1.0", versionDirectory.resolve(artifactId + "-1.0.jar"));
+    }
+}
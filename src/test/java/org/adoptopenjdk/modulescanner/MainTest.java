@@ -3,8 +3,14 @@ package org.adoptopenjdk.modulescanner;
 import static java.util.Collections.sort;
 import static org.junit.jupiter.api.Assertions.assertLinesMatch;
 
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 import org.junit.jupiter.api.Test;
 
 class MainTest {
@@ -23,4 +29,34 @@ class MainTest {
         sort(actualLines);
         assertLinesMatch(expectedLines, actualLines);
     }
+
+    @Test
+    void testSortedGzipOutput() throws Exception {
+        var testMavenRepo = Paths.get("src/test/resources/test-maven-repo");
+        var targetOutput = Files.createTempFile("actual-", "-modulescanner.csv.gz");
+
+        Main.main(testMavenRepo.toString(), "20170101000000", targetOutput.toString(), "sorted");
+
+        var expectedLines = Files.readAllLines(testMavenRepo.resolve("expected-modulescanner.csv"));
+        try (var reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(targetOutput)), StandardCharsets.UTF_8))) {
+            assertLinesMatch(expectedLines, reader.lines().collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    void testSampleEstimates() throws Exception {
+        var testMavenRepo = Paths.get("src/test/resources/test-maven-repo");
+        var targetOutput = Files.createTempFile("actual-", "-modulescanner-estimates.csv");
+
+        Main.main("--sample", testMavenRepo.toString(), "20170101000000", targetOutput.toString(), "3", "42", "group");
+
+        // A sample as large as the population is a census, the estimates are exact
+        assertLinesMatch(List.of(
+                "metric,estimate,lowerBound,upperBound,sampleSize,populationSize",
+                "explicit,0.6667,0.6667,0.6667,3,3",
+                "automatic,0.3333,0.3333,0.3333,3,3",
+                "module,1.0000,1.0000,1.0000,3,3",
+                "jdepsViolations,0.0000,0.0000,0.0000,1,1"),
+                Files.readAllLines(targetOutput));
+    }
 }
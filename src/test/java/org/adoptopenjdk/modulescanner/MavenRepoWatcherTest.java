@@ -0,0 +1,258 @@
+package org.adoptopenjdk.modulescanner;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.adoptopenjdk.modulescanner.MavenRepoWalker.MavenArtifact;
+import org.junit.jupiter.api.Test;
+
+class MavenRepoWatcherTest {
+
+    private static final Path TEST_MAVEN_REPO = Paths.get("./src/test/resources/test-maven-repo");
+
+    @Test
+    void testReconcileOnlyHandsOverChanges() throws Exception {
+        Path mirror = Files.createTempDirectory("mirror-");
+        copy(TEST_MAVEN_REPO.resolve("be"), mirror.resolve("be"));
+        List<MavenArtifact> handled = new ArrayList<>();
+
+        try (var watcher = new MavenRepoWatcher(mirror, "20170101000000", newStateFile(), handleAll(handled))) {
+            watcher.reconcile();
+            assertEquals(1, handled.size());
+            assertEquals("engine-client", handled.get(0).artifactId);
+
+            watcher.reconcile();
+            assertEquals(1, handled.size());
+
+            Path metadata = mirror.resolve("be/yildiz-games/engine-client/maven-metadata.xml");
+            Files.setLastModifiedTime(metadata, FileTime.from(Instant.now().plusSeconds(60)));
+            watcher.reconcile();
+            assertEquals(2, handled.size());
+        }
+    }
+
+    @Test
+    void testOnlyWatchesGroupAndArtifactDirectories() throws Exception {
+        Path mirror = Files.createTempDirectory("mirror-");
+        copy(TEST_MAVEN_REPO.resolve("be"), mirror.resolve("be"));
+
+        try (var watcher = new MavenRepoWatcher(mirror, "20170101000000", newStateFile(), handleAll(new ArrayList<>()))) {
+            watcher.reconcile();
+            assertEquals(Set.of(mirror, mirror.resolve("be"), mirror.resolve("be/yildiz-games"), mirror.resolve("be/yildiz-games/engine-client")),
+                    watcher.getWatchedDirectories());
+        }
+    }
+
+    @Test
+    void testRestartSkipsHandledArtifacts() throws Exception {
+        Path mirror = Files.createTempDirectory("mirror-");
+        Path stateFile = Files.createTempDirectory("state-").resolve("watch-state");
+        copy(TEST_MAVEN_REPO.resolve("be"), mirror.resolve("be"));
+        List<MavenArtifact> handled = new ArrayList<>();
+
+        try (var watcher = new MavenRepoWatcher(mirror, "20170101000000", stateFile, handleAll(handled))) {
+            watcher.reconcile();
+            assertEquals(1, handled.size());
+        }
+
+        // Synced while down, with the timestamp of upstream rather than that of the sync
+        Path slf4j = Paths.get("org/slf4j/slf4j-api");
+        copy(TEST_MAVEN_REPO.resolve(slf4j).resolve("1.8.0-beta2"), mirror.resolve(slf4j).resolve("1.8.0-beta2"));
+        Files.copy(TEST_MAVEN_REPO.resolve(slf4j).resolve("maven-metadata.xml"), mirror.resolve(slf4j).resolve("maven-metadata.xml"));
+        Files.setLastModifiedTime(mirror.resolve(slf4j).resolve("maven-metadata.xml"), FileTime.from(Instant.parse("2018-01-01T00:00:00Z")));
+
+        try (var watcher = new MavenRepoWatcher(mirror, "20170101000000", stateFile, handleAll(handled))) {
+            watcher.reconcile();
+            assertEquals(2, handled.size());
+            assertEquals("slf4j-api", handled.get(1).artifactId);
+        }
+    }
+
+    @Test
+    void testWatchPicksUpSyncedArtifact() throws Exception {
+        Path mirror = Files.createTempDirectory("mirror-");
+        copy(TEST_MAVEN_REPO.resolve("be"), mirror.resolve("be"));
+        BlockingQueue<MavenArtifact> handled = new LinkedBlockingQueue<>();
+
+        var watcher = new MavenRepoWatcher(mirror, "20170101000000", newStateFile(), handleAll(handled));
+        try {
+            var thread = new Thread(() -> watcher.watch(Duration.ofHours(1)));
+            thread.start();
+            assertEquals("engine-client", handled.poll(30, TimeUnit.SECONDS).artifactId);
+
+            Path slf4j = Paths.get("org/slf4j/slf4j-api");
+            copy(TEST_MAVEN_REPO.resolve(slf4j).resolve("1.8.0-beta2"), mirror.resolve(slf4j).resolve("1.8.0-beta2"));
+            Files.copy(TEST_MAVEN_REPO.resolve(slf4j).resolve("maven-metadata.xml"), mirror.resolve(slf4j).resolve("maven-metadata.xml"));
+
+            MavenArtifact synced = handled.poll(30, TimeUnit.SECONDS);
+            assertNotNull(synced);
+            assertEquals("slf4j-api", synced.artifactId);
+
+            watcher.close();
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+            assertFalse(thread.isAlive());
+        } finally {
+            watcher.close();
+        }
+    }
+
+    @Test
+    void testRetriesArtifactUntilJarLands() throws Exception {
+        Path mirror = Files.createTempDirectory("mirror-");
+        Path slf4j = Paths.get("org/slf4j/slf4j-api");
+        Path versionDirectory = mirror.resolve(slf4j).resolve("1.8.0-beta2");
+        Files.createDirectories(mirror.resolve(slf4j));
+        Files.copy(TEST_MAVEN_REPO.resolve(slf4j).resolve("maven-metadata.xml"), mirror.resolve(slf4j).resolve("maven-metadata.xml"));
+        var preFilter = new ArtifactPreFilter(true);
+        BlockingQueue<MavenArtifact> handled = new LinkedBlockingQueue<>();
+
+        var watcher = new MavenRepoWatcher(mirror, "20170101000000", newStateFile(), artifacts -> {
+            List<MavenArtifact> retry = new ArrayList<>();
+            for (MavenArtifact artifact : artifacts) {
+                (preFilter.check(artifact) == ArtifactPreFilter.Verdict.RETRY ? retry : handled).add(artifact);
+            }
+            return retry;
+        });
+        try {
+            watcher.reconcile();
+            assertTrue(handled.isEmpty());
+            assertEquals(1, watcher.getPendingCount());
+
+            // Retried on every reconciliation, until the jar landed
+            watcher.reconcile();
+            assertTrue(handled.isEmpty());
+            assertEquals(1, watcher.getPendingCount());
+
+            var thread = new Thread(() -> watcher.watch(Duration.ofHours(1)));
+            thread.start();
+            copy(TEST_MAVEN_REPO.resolve(slf4j).resolve("1.8.0-beta2"), versionDirectory);
+
+            MavenArtifact synced = handled.poll(30, TimeUnit.SECONDS);
+            assertNotNull(synced);
+            assertEquals("1.8.0-beta2", synced.version);
+
+            watcher.close();
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+            assertFalse(thread.isAlive());
+            assertEquals(0, watcher.getPendingCount());
+        } finally {
+            watcher.close();
+        }
+    }
+
+    @Test
+    void testCloseSavesWhatWasHandled() throws Exception {
+        Path mirror = Files.createTempDirectory("mirror-");
+        Path stateFile = newStateFile();
+        copy(TEST_MAVEN_REPO.resolve("be"), mirror.resolve("be"));
+        BlockingQueue<MavenArtifact> handled = new LinkedBlockingQueue<>();
+
+        var watcher = new MavenRepoWatcher(mirror, "20170101000000", stateFile, handleAll(handled));
+        try {
+            var thread = new Thread(() -> watcher.watch(Duration.ofHours(1)));
+            thread.start();
+            assertNotNull(handled.poll(30, TimeUnit.SECONDS));
+
+            watcher.close();
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+            assertFalse(thread.isAlive());
+        } finally {
+            watcher.close();
+        }
+        assertEquals(1, Files.readAllLines(stateFile).size());
+
+        try (var restarted = new MavenRepoWatcher(mirror, "20170101000000", stateFile, handleAll(handled))) {
+            restarted.reconcile();
+            assertTrue(handled.isEmpty());
+        }
+    }
+
+    @Test
+    void testIgnoresEventsOfCancelledKey() throws Exception {
+        Path mirror = Files.createTempDirectory("mirror-");
+        Path slf4j = Paths.get("org/slf4j/slf4j-api");
+        Path versionDirectory = mirror.resolve(slf4j).resolve("1.8.0-beta2");
+        Files.createDirectories(versionDirectory);
+        Files.copy(TEST_MAVEN_REPO.resolve(slf4j).resolve("maven-metadata.xml"), mirror.resolve(slf4j).resolve("maven-metadata.xml"));
+        BlockingQueue<MavenArtifact> handled = new LinkedBlockingQueue<>();
+
+        var watcher = new MavenRepoWatcher(mirror, "20170101000000", newStateFile(), artifacts -> {
+            List<MavenArtifact> retry = new ArrayList<>();
+            for (MavenArtifact artifact : artifacts) {
+                (Files.exists(artifact.path) ? handled : retry).add(artifact);
+            }
+            return retry;
+        });
+        try {
+            watcher.reconcile();
+            assertEquals(1, watcher.getPendingCount());
+
+            // Queues an event for the version directory, whose key the reconciliation then cancels
+            copy(TEST_MAVEN_REPO.resolve(slf4j).resolve("1.8.0-beta2"), versionDirectory);
+            // Give the WatchService time to pick up the events
+            Thread.sleep(1000);
+            watcher.reconcile();
+            assertEquals("slf4j-api", handled.take().artifactId);
+            assertEquals(0, watcher.getPendingCount());
+
+            var thread = new Thread(() -> watcher.watch(Duration.ofHours(1)));
+            thread.start();
+            thread.join(1000);
+            assertTrue(thread.isAlive());
+
+            copy(TEST_MAVEN_REPO.resolve("be"), mirror.resolve("be"));
+            MavenArtifact synced = handled.poll(30, TimeUnit.SECONDS);
+            assertNotNull(synced);
+            assertEquals("engine-client", synced.artifactId);
+
+            watcher.close();
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+            assertFalse(thread.isAlive());
+        } finally {
+            watcher.close();
+        }
+    }
+
+    // A state file for a watcher starting from scratch
+    private static Path newStateFile() throws IOException {
+        return Files.createTempDirectory("state-").resolve("watch-state");
+    }
+
+    // A handler that takes every artifact as handled
+    private static Function<List<MavenArtifact>, List<MavenArtifact>> handleAll(Collection<MavenArtifact> handled) {
+        return artifacts -> {
+            handled.addAll(artifacts);
+            return List.of();
+        };
+    }
+
+    // Copy a directory tree, the way a sync would
+    private static void copy(Path source, Path target) throws IOException {
+        try (Stream<Path> paths = Files.walk(source)) {
+            for (Path path : paths.collect(Collectors.toList())) {
+                Path copy = target.resolve(source.relativize(path).toString());
+                if (Files.isDirectory(path)) {
+                    Files.createDirectories(copy);
+                } else {
+                    Files.copy(path, copy);
+                }
+            }
+        }
+    }
+}
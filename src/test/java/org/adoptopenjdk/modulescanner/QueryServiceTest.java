@@ -0,0 +1,70 @@
+package org.adoptopenjdk.modulescanner;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class QueryServiceTest {
+
+    private static final Path EXPECTED_CSV = Paths.get("./src/test/resources/test-maven-repo/expected-modulescanner.csv");
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void testLookups() throws Exception {
+        Path resultFile = Files.createTempFile("results-", ".csv");
+        Files.copy(EXPECTED_CSV, resultFile, StandardCopyOption.REPLACE_EXISTING);
+
+        try (var service = new QueryService(resultFile, 0, Duration.ofHours(1))) {
+            HttpResponse<String> taken = get(service, "/modules?name=org.slf4j");
+            assertEquals(200, taken.statusCode());
+            assertEquals(2, taken.body().lines().count());
+
+            assertEquals(404, get(service, "/modules?name=org.example").statusCode());
+            assertEquals(200, get(service, "/modules?prefix=com.fasterxml").statusCode());
+            assertEquals(200, get(service, "/artifacts?coordinates=be.yildiz-games:engine-client").statusCode());
+            assertEquals(3, get(service, "/requires?module=java.base").body().lines().count());
+            assertEquals(404, get(service, "/violations?api=sun.misc.Unsafe").statusCode());
+            assertEquals(400, get(service, "/requires").statusCode());
+            assertEquals(400, get(service, "/artifacts?coordinates=no-artifact-id").statusCode());
+        }
+    }
+
+    @Test
+    void testSwapsInChangedResultFile() throws Exception {
+        Path resultFile = Files.createTempFile("results-", ".csv");
+        Files.copy(EXPECTED_CSV, resultFile, StandardCopyOption.REPLACE_EXISTING);
+
+        try (var service = new QueryService(resultFile, 0, Duration.ofHours(1))) {
+            assertEquals(404, get(service, "/modules?name=org.example").statusCode());
+
+            List<String> lines = new ArrayList<>(Files.readAllLines(EXPECTED_CSV));
+            lines.add("org.example,example,1.0,org.example,-,automatic,-,false,-");
+            Path newer = Files.createTempFile("results-", ".csv");
+            Files.write(newer, lines);
+            Files.setLastModifiedTime(newer, FileTime.from(Instant.now().plusSeconds(60)));
+            Files.move(newer, resultFile, StandardCopyOption.REPLACE_EXISTING);
+            service.reloadIfChanged();
+
+            assertEquals(200, get(service, "/modules?name=org.example").statusCode());
+        }
+    }
+
+    private HttpResponse<String> get(QueryService service, String pathAndQuery) throws Exception {
+        URI uri = URI.create("http://localhost:" + service.getPort() + pathAndQuery);
+        return client.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
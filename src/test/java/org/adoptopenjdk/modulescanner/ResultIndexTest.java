@@ -0,0 +1,94 @@
+package org.adoptopenjdk.modulescanner;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ResultIndexTest {
+
+    private static final Path EXPECTED_CSV = Paths.get("./src/test/resources/test-maven-repo/expected-modulescanner.csv");
+    private static final String NETTY_LINE = "io.netty,netty-handler,4.1.13.Final,-,-,?,-,false,"
+            + "sun.security.x509.X500Name                Use javax.security.auth.x500.X500Principal @since 1.4";
+
+    @Test
+    void testModuleNameLookups() throws Exception {
+        ResultIndex index = ResultIndex.load(EXPECTED_CSV);
+
+        assertEquals(3, index.size());
+        assertEquals(Files.readAllLines(EXPECTED_CSV).get(0), index.getHeader());
+        assertEquals(1, index.findByModuleName("org.slf4j").size());
+        assertTrue(index.findByModuleName("org.slf4j").get(0).startsWith("org.slf4j,slf4j-api,"));
+        assertTrue(index.findByModuleName("org.slf4").isEmpty());
+        assertEquals(1, index.findByModuleNamePrefix("org.slf4").size());
+        assertEquals(3, index.findByModuleNamePrefix("").size());
+        assertTrue(index.findByModuleNamePrefix("zzz").isEmpty());
+    }
+
+    @Test
+    void testCoordinatesAndRequiresLookups() throws Exception {
+        ResultIndex index = ResultIndex.load(EXPECTED_CSV);
+
+        assertEquals(1, index.findByCoordinates("com.fasterxml.jackson.core", "jackson-core").size());
+        assertTrue(index.findByCoordinates("com.fasterxml.jackson.core", "jackson-databind").isEmpty());
+        assertEquals(2, index.findRequiring("java.base").size());
+        assertEquals(1, index.findRequiring("slf4j.api").size());
+        assertTrue(index.findRequiring("-").isEmpty());
+    }
+
+    @Test
+    void testViolationsLookup() throws Exception {
+        Path resultFile = Files.createTempFile("results-", ".csv");
+        List<String> lines = new ArrayList<>(Files.readAllLines(EXPECTED_CSV));
+        lines.add(NETTY_LINE);
+        Files.write(resultFile, lines);
+
+        ResultIndex index = ResultIndex.load(resultFile);
+
+        assertEquals(List.of(NETTY_LINE), index.findViolating("sun.security.x509.X500Name"));
+        assertTrue(index.findViolating("sun.misc.Unsafe").isEmpty());
+    }
+
+    @Test
+    void testLoadsGzipStillBeingWritten() throws Exception {
+        Path resultFile = Files.createTempFile("results-", ".csv.gz");
+        List<String> lines = Files.readAllLines(EXPECTED_CSV);
+
+        try (var writer = new ResultWriter(resultFile, ResultWriter.Order.UNORDERED, false)) {
+            writer.writeHeader(lines.get(0));
+            lines.subList(1, lines.size()).forEach(line -> writer.write("x:x", line));
+            writer.flush();
+
+            // No gzip trailer yet
+            ResultIndex index = ResultIndex.load(resultFile);
+            assertEquals(3, index.size());
+            assertEquals(1, index.findByModuleName("org.slf4j").size());
+        }
+    }
+
+    @Test
+    void testLeavesOutUnterminatedLastLine() throws Exception {
+        Path resultFile = Files.createTempFile("results-", ".csv");
+        Files.writeString(resultFile, Files.readString(EXPECTED_CSV) + "\n" + NETTY_LINE.substring(0, 20));
+
+        ResultIndex index = ResultIndex.load(resultFile);
+
+        assertEquals(3, index.size());
+        assertTrue(index.findByCoordinates("io.netty", "netty-handler").isEmpty());
+    }
+
+    @Test
+    void testKeepsCompleteLastLineWithoutLineSeparator() throws Exception {
+        Path resultFile = Files.createTempFile("results-", ".csv");
+        Files.writeString(resultFile, Files.readString(EXPECTED_CSV) + "\n" + NETTY_LINE);
+
+        ResultIndex index = ResultIndex.load(resultFile);
+
+        assertEquals(4, index.size());
+        assertEquals(List.of(NETTY_LINE), index.findByCoordinates("io.netty", "netty-handler"));
+    }
+}
@@ -0,0 +1,127 @@
+package org.adoptopenjdk.modulescanner;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.Test;
+
+class ResultWriterTest {
+
+    @Test
+    void testUnorderedKeepsArrivalOrder() throws Exception {
+        Path output = Files.createTempFile("unordered-", ".csv");
+
+        try (var writer = new ResultWriter(output, ResultWriter.Order.UNORDERED, false)) {
+            writer.writeHeader("header");
+            writer.write("org.b:b", "org.b,b");
+            writer.write("org.a:a", "org.a,a");
+        }
+
+        assertEquals(List.of("header", "org.b,b", "org.a,a"), Files.readAllLines(output));
+    }
+
+    @Test
+    void testSortedByGroupIdAndArtifactId() throws Exception {
+        Path output = Files.createTempFile("sorted-", ".csv");
+
+        try (var writer = new ResultWriter(output, ResultWriter.Order.SORTED, false)) {
+            writer.writeHeader("header");
+            writer.write("org.b:b", "org.b,b");
+            writer.write("org.a:b", "org.a,b");
+            writer.write("org.a:a", "org.a,a,é");
+        }
+
+        assertEquals(List.of("header", "org.a,a,é", "org.a,b", "org.b,b"), Files.readAllLines(output, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testFlushWritesQueuedLines() throws Exception {
+        Path output = Files.createTempFile("flushed-", ".csv");
+
+        try (var writer = new ResultWriter(output, ResultWriter.Order.UNORDERED, false)) {
+            writer.writeHeader("header");
+            writer.write("org.a:a", "org.a,a");
+            writer.flush();
+            assertEquals(List.of("header", "org.a,a"), Files.readAllLines(output));
+        }
+    }
+
+    @Test
+    void testMoreLinesThanTheQueueHolds() throws Exception {
+        Path output = Files.createTempFile("bounded-", ".csv");
+
+        try (var writer = new ResultWriter(output, ResultWriter.Order.UNORDERED, false)) {
+            IntStream.range(0, 100_000).parallel().forEach(i -> writer.write("x:x", Integer.toString(i)));
+        }
+
+        assertEquals(100_000, Files.readAllLines(output).stream().distinct().count());
+    }
+
+    @Test
+    void testInterruptedWriterDoesNotBlockProducers() throws Exception {
+        Path output = Files.createTempFile("interrupted-", ".csv");
+        var writer = new ResultWriter(output, ResultWriter.Order.UNORDERED, false);
+        // Keep the queue full, so producers are waiting to put when the writer thread gets interrupted
+        var producers = IntStream.range(0, 4).mapToObj(p -> new Thread(() -> {
+            try {
+                IntStream.range(0, 10_000_000).forEach(i -> writer.write("x:x", "x".repeat(100)));
+            } catch (UncheckedIOException expected) {
+                // The interrupted writer thread gave up
+            }
+        })).collect(Collectors.toList());
+        producers.forEach(Thread::start);
+        Thread.sleep(500);
+        Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> "ResultWriter".equals(thread.getName()))
+                .forEach(Thread::interrupt);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            for (Thread producer : producers) {
+                producer.join();
+            }
+            assertThrows(IOException.class, writer::close);
+        });
+        Files.delete(output);
+    }
+
+    @Test
+    void testLinesLargerThanTheBuffer() throws Exception {
+        Path output = Files.createTempFile("large-", ".csv");
+        String line = "x".repeat(3 << 20);
+
+        try (var writer = new ResultWriter(output, ResultWriter.Order.UNORDERED, false)) {
+            writer.write("x:x", line);
+            writer.write("y:y", "y");
+        }
+
+        assertEquals(List.of(line, "y"), Files.readAllLines(output));
+    }
+
+    @Test
+    void testGzipAppend() throws Exception {
+        Path output = Files.createTempFile("appended-", ".csv.gz");
+
+        try (var writer = new ResultWriter(output, ResultWriter.Order.UNORDERED, false)) {
+            writer.writeHeader("header");
+            writer.write("org.a:a", "org.a,a");
+        }
+        try (var writer = new ResultWriter(output, ResultWriter.Order.UNORDERED, true)) {
+            writer.write("org.b:b", "org.b,b");
+        }
+
+        try (var reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(output)), StandardCharsets.UTF_8))) {
+            assertEquals(List.of("header", "org.a,a", "org.b,b"), reader.lines().collect(Collectors.toList()));
+        }
+    }
+}
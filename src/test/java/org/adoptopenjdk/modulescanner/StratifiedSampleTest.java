@@ -0,0 +1,103 @@
+package org.adoptopenjdk.modulescanner;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.adoptopenjdk.modulescanner.MavenRepoWalker.MavenArtifact;
+import org.adoptopenjdk.modulescanner.StratifiedSample.Stratification;
+import org.junit.jupiter.api.Test;
+
+class StratifiedSampleTest {
+
+    // 800 org artifacts updated in 2018 and 200 com artifacts updated in 2019
+    private static List<MavenArtifact> population() {
+        return IntStream.range(0, 1000)
+                .mapToObj(i -> i < 800
+                        ? new MavenArtifact("org.example" + i, "artifact", "1.0", "20180101000000", Paths.get("org.jar"))
+                        : new MavenArtifact("com.example" + i, "artifact", "1.0", "20190101000000", Paths.get("com.jar")))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void testSameSeedSameSample() {
+        List<MavenArtifact> population = population();
+        List<MavenArtifact> shuffled = population();
+        Collections.shuffle(shuffled);
+
+        List<MavenArtifact> first = StratifiedSample.draw(population.stream(), Stratification.GROUP, 100, 42).getArtifacts();
+        List<MavenArtifact> second = StratifiedSample.draw(shuffled.stream(), Stratification.GROUP, 100, 42).getArtifacts();
+        List<MavenArtifact> other = StratifiedSample.draw(population.stream(), Stratification.GROUP, 100, 43).getArtifacts();
+
+        assertEquals(groupIds(first), groupIds(second));
+        assertNotEquals(groupIds(first), groupIds(other));
+    }
+
+    @Test
+    void testProportionalAllocation() {
+        StratifiedSample sample = StratifiedSample.draw(population().stream(), Stratification.YEAR, 100, 42);
+        List<MavenArtifact> artifacts = sample.getArtifacts();
+
+        assertEquals(1000, sample.getPopulationSize());
+        assertEquals(100, artifacts.size());
+        assertEquals(80, artifacts.stream().filter(artifact -> artifact.lastUpdated.startsWith("2018")).count());
+        assertEquals(20, artifacts.stream().filter(artifact -> artifact.lastUpdated.startsWith("2019")).count());
+    }
+
+    @Test
+    void testEstimateWeighsStrata() {
+        StratifiedSample sample = StratifiedSample.draw(population().stream(), Stratification.GROUP, 100, 42);
+        // Only the com artifacts have the property, a fifth of the population
+        Map<MavenArtifact, Boolean> results = sample.getArtifacts().stream()
+                .collect(Collectors.toMap(Function.identity(), artifact -> artifact.groupId.startsWith("com")));
+
+        StratifiedSample.Estimate estimate = sample.estimate(results, Boolean::booleanValue);
+
+        assertEquals(0.2, estimate.proportion, 1e-9);
+        assertEquals(0.2, estimate.lowerBound, 1e-9);
+        assertEquals(0.2, estimate.upperBound, 1e-9);
+        assertEquals(100, estimate.sampleSize);
+        assertEquals(1000, estimate.populationSize);
+    }
+
+    @Test
+    void testConfidenceInterval() {
+        StratifiedSample sample = StratifiedSample.draw(population().stream(), Stratification.GROUP, 100, 42);
+        // Every other sampled artifact has the property
+        List<MavenArtifact> artifacts = sample.getArtifacts();
+        Map<MavenArtifact, Boolean> results = IntStream.range(0, artifacts.size()).boxed()
+                .collect(Collectors.toMap(artifacts::get, i -> i % 2 == 0));
+
+        StratifiedSample.Estimate estimate = sample.estimate(results, Boolean::booleanValue);
+
+        assertEquals(0.5, estimate.proportion, 1e-9);
+        assertTrue(estimate.lowerBound < 0.5 && estimate.lowerBound > 0.35);
+        assertTrue(estimate.upperBound > 0.5 && estimate.upperBound < 0.65);
+    }
+
+    @Test
+    void testEstimateWithinDomain() {
+        StratifiedSample sample = StratifiedSample.draw(population().stream(), Stratification.GROUP, 100, 42);
+        // Only the com artifacts are in the domain, every other one of them has the property
+        List<MavenArtifact> artifacts = sample.getArtifacts();
+        Map<MavenArtifact, String> results = IntStream.range(0, artifacts.size()).boxed()
+                .collect(Collectors.toMap(artifacts::get, i -> artifacts.get(i).groupId.startsWith("org") ? "skipped" : i % 2 == 0 ? "yes" : "no"));
+
+        StratifiedSample.Estimate estimate = sample.estimate(results, result -> !"skipped".equals(result), "yes"::equals);
+
+        assertEquals(0.5, estimate.proportion, 1e-9);
+        assertTrue(estimate.lowerBound < 0.5 && estimate.lowerBound > 0.2);
+        assertTrue(estimate.upperBound > 0.5 && estimate.upperBound < 0.8);
+        assertEquals(20, estimate.sampleSize);
+        assertEquals(200, estimate.populationSize);
+    }
+
+    private static List<String> groupIds(List<MavenArtifact> artifacts) {
+        return artifacts.stream().map(artifact -> artifact.groupId).collect(Collectors.toList());
+    }
+}